@@ -0,0 +1,195 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Answers "latest revision touching these paths" for every material polling the same clone and branch from a
+ * single history walk. Each commit's changed files (relative to each parent, for merges) are listed once and routed
+ * through a {@link PathTrie} of all registered path sets, and once a tip has been evaluated only the commits added on
+ * top of it are walked again. Evaluators are kept for the 1000 most recently polled clones.
+ * <p>
+ * Path sets using pathspec magic or globs cannot be routed through the trie and are always answered by git directly,
+ * as is a repository with a single registered path set, for which a path-limited {@code git log -1} is cheaper.
+ */
+public class BatchRevisionEvaluator {
+    static final int PAGE_SIZE = 1000;
+    private static final int MAX_CLONES = 1_000;
+    private static final Duration IDLE_PATH_SET_EXPIRY = Duration.ofDays(1);
+    private static final Map<String, BatchRevisionEvaluator> CLONES = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BatchRevisionEvaluator> eldest) {
+            return size() > MAX_CLONES;
+        }
+    });
+
+    private final Map<List<String>, PathSetState> pathSets = new HashMap<>();
+    private String evaluatedTip;
+
+    /**
+     * @param workingDir the clone the material is polled from; clones fetched at different times may have different
+     * tips, so each has an evaluator of its own.
+     */
+    public static BatchRevisionEvaluator forClone(GitConfig gitConfig, File workingDir) {
+        String key = workingDir.toPath().toAbsolutePath().normalize() + "\n" + historyKey(gitConfig);
+        return CLONES.computeIfAbsent(key, k -> new BatchRevisionEvaluator());
+    }
+
+    /**
+     * @return which history of which repository a material walks; materials walking only first parents see a
+     * different history of the same branch.
+     */
+    static String historyKey(GitConfig gitConfig) {
+        return RepositoryIdentity.of(gitConfig) + "#" + gitConfig.getEffectiveBranch() + (gitConfig.isFirstParent() ? "#first-parent" : "");
+    }
+
+    public synchronized Revision latestRevision(GitHelper git, List<String> paths) {
+        List<String> pathSet = normalize(paths);
+        expireIdlePathSets();
+        PathSetState requested = pathSets.computeIfAbsent(pathSet, key -> new PathSetState());
+        requested.lastRequested = Instant.now();
+
+        if (!PathTrie.isRoutable(pathSet) || routablePathSets().size() < 2) {
+            return git.findLatestRevision(paths);
+        }
+
+        evaluate(git, git.remoteTip());
+        return requested.revision == null ? null : git.getDetailsForRevision(requested.revision);
+    }
+
+    private void evaluate(GitHelper git, String tip) {
+        List<List<String>> routable = routablePathSets();
+        if (!tip.equals(evaluatedTip)) {
+            List<List<String>> evaluated = routable.stream().filter(pathSet -> pathSets.get(pathSet).evaluated).toList();
+            if (evaluatedTip != null && !evaluated.isEmpty() && git.isAncestor(evaluatedTip, tip)) {
+                Map<List<String>, String> leftAt = walk(git, evaluatedTip + ".." + tip, tip, evaluated);
+                // history which only leads back to the evaluated tip has the answer found from there; history leading
+                // elsewhere out of the new commits, e.g. to where a merge took its files from, is walked afresh
+                leftAt.forEach((pathSet, commit) -> pathSets.get(pathSet).evaluated = commit.equals(evaluatedTip));
+            } else {
+                routable.forEach(pathSet -> pathSets.get(pathSet).evaluated = false);
+            }
+            evaluatedTip = tip;
+        }
+
+        List<List<String>> pending = routable.stream().filter(pathSet -> !pathSets.get(pathSet).evaluated).toList();
+        if (!pending.isEmpty()) {
+            pending.forEach(pathSet -> pathSets.get(pathSet).revision = null);
+            walk(git, tip, tip, pending);
+            pending.forEach(pathSet -> pathSets.get(pathSet).evaluated = true);
+        }
+    }
+
+    /**
+     * Walks {@code revisions} newest first, recording for each path set the latest commit a path-limited
+     * {@code git log} of {@code tip} would find. Such a log simplifies history: at a merge which kept a path set's
+     * files as one of its parents had them, it only follows the first such parent, and shows the merge itself if
+     * there is none. Up to the commit it shows, the history it follows for a path set is therefore a single line of
+     * commits, which is traced here from the files each commit changed relative to each of its parents.
+     *
+     * @return for each path set without a match in the walked commits, which keep whatever they had before, the commit
+     * its history continues with outside of {@code revisions}.
+     */
+    private Map<List<String>, String> walk(GitHelper git, String revisions, String tip, List<List<String>> targets) {
+        PathTrie<List<String>> trie = new PathTrie<>();
+        targets.forEach(pathSet -> pathSet.forEach(path -> trie.add(path, pathSet)));
+        Walk walk = new Walk(trie, targets, tip);
+        for (int skip = 0; !walk.next.isEmpty(); skip += PAGE_SIZE) {
+            int listed = git.changedFiles(revisions, skip, PAGE_SIZE, walk);
+            walk.finishCommit();
+            if (listed < PAGE_SIZE) {
+                break;
+            }
+        }
+        return walk.next;
+    }
+
+    private List<List<String>> routablePathSets() {
+        return pathSets.keySet().stream().filter(PathTrie::isRoutable).toList();
+    }
+
+    private void expireIdlePathSets() {
+        Instant expiry = Instant.now().minus(IDLE_PATH_SET_EXPIRY);
+        pathSets.values().removeIf(state -> state.lastRequested.isBefore(expiry));
+    }
+
+    static List<String> normalize(List<String> paths) {
+        return paths.stream().map(String::trim).distinct().sorted().toList();
+    }
+
+    /**
+     * Follows, for every path set, the commit its simplified history continues with, through the commits and files
+     * {@link GitHelper#changedFiles(String, int, int, GitHelper.ChangedFilesHandler)} lists.
+     */
+    private class Walk implements GitHelper.ChangedFilesHandler {
+        private final PathTrie<List<String>> trie;
+        private final Map<List<String>, String> next = new HashMap<>();
+        private String revision;
+        private List<String> parents;
+        private String parent;
+        /**
+         * The path sets whose history continues with the current commit, with the parents it differs from for them
+         * ({@code null} for the files a root commit added).
+         */
+        private final Map<List<String>, Set<String>> differing = new HashMap<>();
+
+        Walk(PathTrie<List<String>> trie, List<List<String>> targets, String tip) {
+            this.trie = trie;
+            targets.forEach(pathSet -> next.put(pathSet, tip));
+        }
+
+        @Override
+        public void diff(String revision, List<String> parents, String parent) {
+            if (!revision.equals(this.revision)) {
+                finishCommit();
+                this.revision = revision;
+                this.parents = parents;
+                next.forEach((pathSet, commit) -> {
+                    if (commit.equals(revision)) {
+                        differing.put(pathSet, new HashSet<>());
+                    }
+                });
+            }
+            this.parent = parent;
+        }
+
+        @Override
+        public void file(String file) {
+            if (differing.isEmpty()) {
+                return;
+            }
+            for (List<String> pathSet : trie.match(file)) {
+                Set<String> parents = differing.get(pathSet);
+                if (parents != null) {
+                    parents.add(parent);
+                }
+            }
+        }
+
+        /**
+         * Shows the current commit for the path sets it differs from every parent for, or which a root commit added
+         * files of, and moves the others on to the first parent it does not differ from.
+         */
+        void finishCommit() {
+            differing.forEach((pathSet, differs) -> {
+                String same = parents.stream().filter(parent -> !differs.contains(parent)).findFirst().orElse(null);
+                if (same != null) {
+                    next.put(pathSet, same);
+                } else {
+                    next.remove(pathSet);
+                    // a root commit without any of the path set's files ends its history without showing anything
+                    pathSets.get(pathSet).revision = parents.isEmpty() && differs.isEmpty() ? null : revision;
+                }
+            });
+            differing.clear();
+        }
+    }
+
+    private static class PathSetState {
+        private Instant lastRequested = Instant.now();
+        private boolean evaluated;
+        private String revision;
+    }
+}
@@ -0,0 +1,145 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import com.thoughtworks.go.scm.plugin.util.Parallel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the latest revision touching a material's paths on each branch matching its {@link GitConfig#getBranchPattern()
+ * branch pattern}, from one fetch of all branches. The tip of every matching branch is remembered between polls, and
+ * only branches whose tip moved since are looked at again: incrementally from their previous tip when it is still an
+ * ancestor, from scratch otherwise. Moved branches are looked at in parallel, up to {@value #PARALLELISM} (default 4)
+ * at a time per repository.
+ * <p>
+ * Patterns are comma separated globs, in which {@code *} and {@code ?} match within one level of a branch name such as
+ * {@code release/1.0}, while {@code **} matches across levels.
+ */
+public class BranchPatternEvaluator {
+    public static final String PARALLELISM = "git.path.material.branch.parallelism";
+    private static final Map<String, BranchPatternEvaluator> MATERIALS = new ConcurrentHashMap<>();
+
+    private final String repository;
+    private final Pattern pattern;
+    private final Map<String, Revision> latest = new HashMap<>();
+    private Map<String, String> tips;
+
+    BranchPatternEvaluator(String repository, String pattern) {
+        this.repository = repository;
+        this.pattern = compile(pattern);
+    }
+
+    public static BranchPatternEvaluator forMaterial(GitConfig gitConfig, List<String> paths) {
+        String repository = BatchRevisionEvaluator.historyKey(gitConfig);
+        String key = repository + "#" + gitConfig.getBranchPattern() + "\n" + String.join("\n", BatchRevisionEvaluator.normalize(paths));
+        return MATERIALS.computeIfAbsent(key, k -> new BranchPatternEvaluator(repository, gitConfig.getBranchPattern()));
+    }
+
+    /**
+     * @return the latest revision touching {@code paths} of each matching branch which has one, newest first, each
+     * {@link Revision#getBranch() labelled} with its branch.
+     */
+    public synchronized List<Revision> latestRevisions(GitHelper git, List<String> paths) {
+        evaluate(git, paths);
+        return newestFirst(latest.values());
+    }
+
+    /**
+     * @return the latest revisions of the branches which had a revision touching {@code paths} added since the last
+     * poll, newest first, other than {@code previousRevision}. Without an earlier poll to compare with (e.g. after a
+     * restart), those committed after {@code previousRevision} are returned.
+     */
+    public synchronized List<Revision> revisionsSince(GitHelper git, List<String> paths, String previousRevision) {
+        boolean firstPoll = tips == null;
+        Map<String, Revision> before = new HashMap<>(latest);
+        evaluate(git, paths);
+
+        List<Revision> changed = new ArrayList<>();
+        if (firstPoll) {
+            Revision previous = details(git, previousRevision);
+            latest.values().stream()
+                    .filter(revision -> previous == null || revision.getTimestamp().isAfter(previous.getTimestamp()))
+                    .forEach(changed::add);
+        } else {
+            latest.forEach((branch, revision) -> {
+                Revision was = before.get(branch);
+                if (was == null || !was.getRevision().equals(revision.getRevision())) {
+                    changed.add(revision);
+                }
+            });
+        }
+        changed.removeIf(revision -> revision.getRevision().equals(previousRevision));
+        return newestFirst(changed);
+    }
+
+    private static Revision details(GitHelper git, String revision) {
+        try {
+            return git.getDetailsForRevision(revision);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void evaluate(GitHelper git, List<String> paths) {
+        Map<String, String> current = new TreeMap<>();
+        git.getBranchToRevisionMap().forEach((branch, tip) -> {
+            if (pattern.matcher(branch).matches()) {
+                current.put(branch, tip);
+            }
+        });
+        Map<String, String> previous = tips == null ? Map.of() : tips;
+        latest.keySet().retainAll(current.keySet());
+
+        List<String> moved = current.keySet().stream().filter(branch -> !current.get(branch).equals(previous.get(branch))).toList();
+        Map<String, Optional<Revision>> found = new ConcurrentHashMap<>();
+        Parallel.forEach(repository + "#branches", Integer.getInteger(PARALLELISM, 4), moved, branch -> {
+            String since = previous.get(branch);
+            String tip = current.get(branch);
+            if (since != null && git.isAncestor(since, tip)) {
+                // nothing new touching the paths leaves the branch's earlier answer standing
+                Revision revision = git.getLatestRevisionSince(since, tip, paths);
+                found.put(branch, revision == null ? Optional.ofNullable(latest.get(branch)) : Optional.of(revision));
+            } else {
+                found.put(branch, Optional.ofNullable(git.getLatestRevisionAt(tip, paths)));
+            }
+        });
+        found.forEach((branch, revision) -> revision.ifPresentOrElse(r -> {
+            r.setBranch(branch);
+            latest.put(branch, r);
+        }, () -> latest.remove(branch)));
+        tips = current;
+    }
+
+    private static List<Revision> newestFirst(Collection<Revision> revisions) {
+        return revisions.stream()
+                .sorted(Comparator.comparing(Revision::getTimestamp).reversed().thenComparing(Revision::getBranch))
+                .toList();
+    }
+
+    static Pattern compile(String branchPattern) {
+        StringBuilder regex = new StringBuilder();
+        for (String glob : branchPattern.split(",")) {
+            glob = glob.trim();
+            if (glob.isEmpty()) {
+                continue;
+            }
+            regex.append(regex.length() == 0 ? "" : "|").append("(?:");
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else if (c == '*') {
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else {
+                    regex.append(Character.isLetterOrDigit(c) ? String.valueOf(c) : "\\" + c);
+                }
+            }
+            regex.append(")");
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
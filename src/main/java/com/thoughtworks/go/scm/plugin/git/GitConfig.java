@@ -15,7 +15,11 @@ public class GitConfig {
     private boolean subModule = false;
     private boolean recursiveSubModuleUpdate = true;
     private boolean noCheckout = false;
+    private boolean bare = false;
     private Optional<ShallowClone> shallowClone = Optional.empty();
+    private boolean firstParent = false;
+    private String branchPattern;
+    private String tagPattern;
 
     public GitConfig(String url) {
         this.url = url;
@@ -122,6 +126,46 @@ public class GitConfig {
         this.shallowClone = Optional.of(shallowClone);
     }
 
+    public boolean isFirstParent() {
+        return firstParent;
+    }
+
+    public void setFirstParent(boolean firstParent) {
+        this.firstParent = firstParent;
+    }
+
+    /**
+     * @return the comma separated globs of the branches to monitor instead of just {@link #getBranch()}, or
+     * {@code null} to monitor that branch only.
+     */
+    public String getBranchPattern() {
+        return branchPattern;
+    }
+
+    public void setBranchPattern(String branchPattern) {
+        this.branchPattern = StringUtil.isBlank(branchPattern) ? null : branchPattern;
+    }
+
+    public boolean isBranchPattern() {
+        return branchPattern != null;
+    }
+
+    /**
+     * @return the comma separated globs of the tags to monitor instead of a branch, or {@code null} to monitor a
+     * branch.
+     */
+    public String getTagPattern() {
+        return tagPattern;
+    }
+
+    public void setTagPattern(String tagPattern) {
+        this.tagPattern = StringUtil.isBlank(tagPattern) ? null : tagPattern;
+    }
+
+    public boolean isTagPattern() {
+        return tagPattern != null;
+    }
+
     public boolean isNoCheckout() {
         return noCheckout;
     }
@@ -130,6 +174,14 @@ public class GitConfig {
         this.noCheckout = noCheckout;
     }
 
+    public boolean isBare() {
+        return bare;
+    }
+
+    public void setBare(boolean bare) {
+        this.bare = bare;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -138,16 +190,20 @@ public class GitConfig {
         return subModule == gitConfig.subModule &&
                 recursiveSubModuleUpdate == gitConfig.recursiveSubModuleUpdate &&
                 noCheckout == gitConfig.noCheckout &&
+                bare == gitConfig.bare &&
+                firstParent == gitConfig.firstParent &&
                 Objects.equals(url, gitConfig.url) &&
                 Objects.equals(username, gitConfig.username) &&
                 Objects.equals(password, gitConfig.password) &&
                 Objects.equals(branch, gitConfig.branch) &&
+                Objects.equals(branchPattern, gitConfig.branchPattern) &&
+                Objects.equals(tagPattern, gitConfig.tagPattern) &&
                 shallowClone.equals(gitConfig.shallowClone);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(url, username, password, branch, subModule, recursiveSubModuleUpdate, noCheckout, shallowClone);
+        return Objects.hash(url, username, password, branch, subModule, recursiveSubModuleUpdate, noCheckout, bare, shallowClone, firstParent, branchPattern, tagPattern);
     }
 
     public List<String> redactables() {
@@ -1,16 +1,25 @@
 package com.thoughtworks.go.scm.plugin.git;
 
+import com.thoughtworks.go.scm.plugin.git.cmd.BoundedConsumer;
+import com.thoughtworks.go.scm.plugin.git.cmd.CommandTimeouts;
 import com.thoughtworks.go.scm.plugin.git.cmd.Console;
 import com.thoughtworks.go.scm.plugin.git.cmd.ConsoleResult;
 import com.thoughtworks.go.scm.plugin.git.cmd.InMemoryConsumer;
+import com.thoughtworks.go.scm.plugin.git.cmd.LineHandlerConsumer;
 import com.thoughtworks.go.scm.plugin.git.cmd.ProcessOutputStreamConsumer;
+import com.thoughtworks.go.scm.plugin.git.cmd.ProcessScheduler;
+import com.thoughtworks.go.scm.plugin.git.cmd.StreamConsumer;
+import com.thoughtworks.go.scm.plugin.util.Parallel;
 import com.thoughtworks.go.scm.plugin.util.StringUtil;
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -20,18 +29,28 @@ import static java.util.stream.Stream.of;
 
 public class GitHelper {
     public static final String GIT_SUBMODULE_ALLOW_FILE_PROTOCOL = "toggle.git.submodule.allow.file.protocol";
+    public static final String MAX_MODIFIED_FILES = "git.path.material.max.modified.files";
+    public static final String DIFF_PARALLELISM = "git.path.material.diff.parallelism";
+    public static final String SUBMODULE_JOBS = "git.path.material.submodule.jobs";
+    // keeps command lines well below the limits of all platforms
+    private static final int REF_BATCH_SIZE = 200;
     private static final Pattern GIT_SUBMODULE_STATUS_PATTERN = Pattern.compile("^.[0-9a-fA-F]{40} (.+?)( \\(.+\\))?$");
     private static final Pattern GIT_SUBMODULE_URL_PATTERN = Pattern.compile("^submodule\\.(.+)\\.url (.+)$");
+    private static final Pattern SUBMODULE_URL_KEY = Pattern.compile("^submodule\\.(.+)\\.url$");
+    private static final Set<String> REMOTE_SUBCOMMANDS = Set.of("clone", "fetch", "ls-remote", "pull", "push");
     private static final Pattern GIT_DIFF_TREE_PATTERN = Pattern.compile("^(.{1,3})\\s+(.+)$");
 
     private final GitConfig gitConfig;
     private final File workingDir;
     private final ProcessOutputStreamConsumer stdOut;
     private final ProcessOutputStreamConsumer stdErr;
+    private StagingArea stagingArea;
+    private ProcessScheduler.Priority priority = ProcessScheduler.Priority.NORMAL;
+    private RepositoryState state;
 
 
     public GitHelper(GitConfig gitConfig, File workingDir) {
-        this(gitConfig, workingDir, new ProcessOutputStreamConsumer(new InMemoryConsumer()), new ProcessOutputStreamConsumer(new InMemoryConsumer()));
+        this(gitConfig, workingDir, new ProcessOutputStreamConsumer(new BoundedConsumer()), new ProcessOutputStreamConsumer(new BoundedConsumer()));
     }
 
     public GitHelper(GitConfig gitConfig, File workingDir, ProcessOutputStreamConsumer stdOut, ProcessOutputStreamConsumer stdErr) {
@@ -46,14 +65,75 @@ public class GitHelper {
         return runAndGetOutput(gitCmd, new File("/")).stdOut().get(0);
     }
 
+    /**
+     * Checks that the remote can be reached by asking it for the material's branch only; with {@code --heads}, protocol
+     * v2 has the remote advertise its branches alone, rather than all of its refs. Successful checks are reused for a
+     * short while, see {@link RemoteRefCache}.
+     */
     public void checkConnection() {
-        CommandLine gitCmd = Console.createCommand("ls-remote", gitConfig.getEffectiveUrl());
-        runAndGetOutput(gitCmd);
+        lsRemoteTip(true);
+    }
+
+    /**
+     * @return the commit the material's branch points to on the remote, looked up afresh, or {@code null} if the
+     * remote has no such branch.
+     */
+    public String lsRemoteTip() {
+        return lsRemoteTip(false);
+    }
+
+    private String lsRemoteTip(boolean probe) {
+        String ref = "refs/heads/" + gitConfig.getEffectiveBranch();
+        return RemoteRefCache.instance().tip(gitConfig, ref, () -> {
+            CommandLine gitCmd = Console.createCommand("-c", "protocol.version=2", "ls-remote", "--heads", gitConfig.getEffectiveUrl(), gitConfig.getEffectiveBranch());
+            List<String> lines = runAgainstRemote(gitCmd, workingDir, new ProcessOutputStreamConsumer(new InMemoryConsumer()), new ProcessOutputStreamConsumer(new BoundedConsumer()), probe).stdOut();
+            // patterns match any ref ending in them, e.g. refs/heads/team/main for main
+            return lines.stream()
+                    .map(line -> line.split("\t", 2))
+                    .filter(parts -> parts.length == 2 && parts[1].equals(ref))
+                    .map(parts -> parts[0])
+                    .findFirst()
+                    .orElse(null);
+        }, probe);
     }
 
     public void cloneRepository() {
-        List<String> args = new ArrayList<>(Arrays.asList("clone", String.format("--branch=%s", gitConfig.getEffectiveBranch())));
-        if (gitConfig.isNoCheckout())  {
+        if (gitConfig.isBare()) {
+            initBareRepository();
+        } else {
+            cloneRepository(!gitConfig.isNoCheckout());
+        }
+    }
+
+    /**
+     * Sets up a bare repository tracking the remote's branches under {@code refs/remotes/origin/}, with only the
+     * material's branch fetched, leaving the rest to the fetch which follows every clone. No template (sample hooks etc.) is installed,
+     * and {@code HEAD} follows the remote branch, so it is current after every fetch without any further updates.
+     */
+    private void initBareRepository() {
+        runAndGetOutput(Console.createCommand("init", "--bare", "--template=", workingDir.getAbsolutePath()), null, stdOut, stdErr);
+        runOrBomb(Console.createCommand("remote", "add", "origin", gitConfig.getEffectiveUrl()));
+        runOrBomb(Console.createCommand("symbolic-ref", "HEAD", "refs/remotes/" + gitConfig.getRemoteBranch()));
+        // git discards the objects of a fetch which fails part way, so fetching the material's branch on its own keeps
+        // it even if fetching all the others fails, for a later attempt to carry on from; materials monitoring a branch
+        // or tag pattern have no branch of their own
+        if (gitConfig.getShallowClone().isPresent()) {
+            fetchToDepth(gitConfig.getShallowClone().get().getDefaultCommitsDepth());
+        } else if (!gitConfig.isBranchPattern() && !gitConfig.isTagPattern()) {
+            fetch(String.format("+refs/heads/%s:refs/remotes/%s", gitConfig.getEffectiveBranch(), gitConfig.getRemoteBranch()));
+        }
+    }
+
+    private void cloneRepository(boolean checkout) {
+        List<String> args = new ArrayList<>(List.of("clone"));
+        if (!gitConfig.isBranchPattern() && !gitConfig.isTagPattern()) {
+            args.add(String.format("--branch=%s", gitConfig.getEffectiveBranch()));
+        } else if (gitConfig.isShallowClone()) {
+            // the revision to check out may be on any of the monitored refs, which a shallow clone would otherwise
+            // narrow down to the remote's default branch
+            args.add("--no-single-branch");
+        }
+        if (!checkout)  {
             args.add("--no-checkout");
         }
 
@@ -72,10 +152,25 @@ public class GitHelper {
     }
 
     public String workingRepositoryUrl() {
+        String url = repositoryFiles().map(files -> files.remoteUrl("origin")).orElse(null);
+        if (url != null) {
+            return url;
+        }
         CommandLine gitConfig = Console.createCommand("config", "remote.origin.url");
         return runAndGetOutput(gitConfig).stdOut().get(0);
     }
 
+    /**
+     * @return a reader for this repository's config and ref files, if its git directory is where this helper set it up.
+     */
+    private Optional<RepositoryFiles> repositoryFiles() {
+        if (workingDir == null) {
+            return Optional.empty();
+        }
+        File gitDir = gitConfig != null && gitConfig.isBare() ? workingDir : new File(workingDir, ".git");
+        return new File(gitDir, "HEAD").isFile() ? Optional.of(RepositoryFiles.of(gitDir)) : Optional.empty();
+    }
+
     public String getCurrentBranch() {
         CommandLine gitRevParse = Console.createCommand("rev-parse", "--abbrev-ref", "HEAD");
         return runAndGetOutput(gitRevParse).stdOut().get(0);
@@ -100,18 +195,228 @@ public class GitHelper {
     }
 
     public Revision getLatestRevision(List<String> subPaths) {
-        return gitLog(logArgs(subPaths, "-1"))
+        if (gitConfig == null || subPaths == null || subPaths.isEmpty()) {
+            return findLatestRevision(subPaths);
+        }
+        return BatchRevisionEvaluator.forClone(gitConfig, workingDir).latestRevision(this, subPaths);
+    }
+
+    /**
+     * @return the latest revision reachable from {@code tip} but not from {@code since} which touched any of
+     * {@code subPaths}, or {@code null} if there is none.
+     */
+    public Revision getLatestRevisionSince(String since, String tip, List<String> subPaths) {
+        return gitLog(logArgs(subPaths, "-1", since + ".." + tip))
+                .stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    Revision findLatestRevision(List<String> subPaths) {
+        return getLatestRevisionAt(tipRef(), subPaths);
+    }
+
+    /**
+     * @return the latest revision reachable from {@code tip} which touched any of {@code subPaths}, or {@code null} if
+     * there is none.
+     */
+    public Revision getLatestRevisionAt(String tip, List<String> subPaths) {
+        return gitLog(logArgs(subPaths, "-1", tip))
                 .stream()
                 .findFirst()
                 .orElse(null);
     }
 
+    public String remoteTip() {
+        if (gitConfig != null) {
+            String tip = repositoryFiles().map(RepositoryFiles::refs).map(refs -> refs.get("refs/remotes/" + tipRef())).orElse(null);
+            if (tip != null) {
+                return tip;
+            }
+        }
+        CommandLine gitCmd = Console.createCommand("rev-parse", "--verify", tipRef() + "^{commit}");
+        return runAndGetOutput(gitCmd).stdOut().get(0);
+    }
+
+    private String tipRef() {
+        return gitConfig == null ? "HEAD" : gitConfig.getRemoteBranch();
+    }
+
+    /**
+     * @return the commit each of {@code objects} (e.g. annotated tags) points to, leaving out those which do not point
+     * to a commit.
+     */
+    Map<String, String> commitsOf(List<String> objects) {
+        Map<String, String> commits = new HashMap<>();
+        for (int start = 0; start < objects.size(); start += REF_BATCH_SIZE) {
+            List<String> batch = objects.subList(start, Math.min(start + REF_BATCH_SIZE, objects.size()));
+            try {
+                List<String> peeled = runAndGetOutput(Console.createCommand(concat(of("rev-parse"), batch.stream().map(object -> object + "^{commit}")).toArray(String[]::new))).stdOut();
+                for (int i = 0; i < batch.size(); i++) {
+                    commits.put(batch.get(i), peeled.get(i));
+                }
+            } catch (RuntimeException e) {
+                // one object which is not a commit fails the whole batch
+                for (String object : batch) {
+                    try {
+                        commits.put(object, runAndGetOutput(Console.createCommand("rev-parse", "--verify", object + "^{commit}")).stdOut().get(0));
+                    } catch (RuntimeException notACommit) {
+                        // left out
+                    }
+                }
+            }
+        }
+        return commits;
+    }
+
+    /**
+     * @return the committer time, in seconds since the epoch, of each of {@code commits}.
+     */
+    Map<String, Long> commitTimes(Collection<String> commits) {
+        List<String> all = new ArrayList<>(new LinkedHashSet<>(commits));
+        Map<String, Long> times = new HashMap<>();
+        for (int start = 0; start < all.size(); start += REF_BATCH_SIZE) {
+            List<String> batch = all.subList(start, Math.min(start + REF_BATCH_SIZE, all.size()));
+            runAndHandleLines(Console.createCommand(concat(of("log", "--no-walk", "--format=%H %ct"), batch.stream()).toArray(String[]::new)), line -> {
+                String[] parts = line.split(" ");
+                times.put(parts[0], Long.parseLong(parts[1]));
+            });
+        }
+        return times;
+    }
+
+    /**
+     * @return whether any file matching {@code subPaths} differs between the two commits.
+     */
+    boolean hasChanges(String from, String to, List<String> subPaths) {
+        boolean[] changed = {false};
+        CommandLine gitCmd = Console.createCommand(concat(of("diff", "--name-only", "--no-renames", from, to, "--"), subPaths.stream().map(String::trim)).toArray(String[]::new));
+        runAndHandleLines(gitCmd, line -> changed[0] |= !line.isEmpty());
+        return changed[0];
+    }
+
+    public boolean isAncestor(String ancestor, String descendant) {
+        try {
+            runAndGetOutput(Console.createCommand("merge-base", "--is-ancestor", ancestor, descendant));
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Streams up to {@code maxCount} commits of {@code revisions} to {@code handler}, no parent before its children
+     * and skipping the first {@code skip}, each with the files it changed relative to its parents: a merge commit once for every parent
+     * it differs from, as with {@code log -m}, and other commits once. In first-parent mode only the first parent chain
+     * is walked, and merge commits are only compared with their first parent. File names are handed on as they are
+     * read rather than collected, so that a commit changing a great many files is never held in memory.
+     *
+     * @return the number of commits listed.
+     */
+    int changedFiles(String revisions, int skip, int maxCount, ChangedFilesHandler handler) {
+        CommandLine gitCmd = Console.createCommand(of(
+                of("-c", "core.quotePath=false", "-c", "log.showRoot=true", "-c", "log.diffMerges=separate"),
+                of("log", "--topo-order", "--pretty=raw", "--name-status"),
+                firstParent() ? of("--first-parent", "--diff-merges=first-parent") : of("-m"),
+                of("--no-renames", "--no-color", "--skip=" + skip, "--max-count=" + maxCount, revisions, "--")
+        ).flatMap(s -> s).toArray(String[]::new));
+        RawLogReader reader = new RawLogReader(handler, firstParent());
+        runAndHandleLines(gitCmd, reader::processLine);
+        return reader.commits;
+    }
+
+    /**
+     * Receives the commits {@link #changedFiles(String, int, int, ChangedFilesHandler)} lists, each diff followed by
+     * the files it lists.
+     */
+    interface ChangedFilesHandler {
+        /**
+         * @param parents the parents of {@code revision} which are walked, i.e. only the first in first-parent mode.
+         * @param parent  the parent the files which follow are compared with, {@code null} for a root commit.
+         */
+        void diff(String revision, List<String> parents, String parent);
+
+        void file(String file);
+    }
+
+    /**
+     * Reads {@code log --pretty=raw --name-status} output. Headers and the indented commit messages never look like
+     * name-status lines, whatever the files are called.
+     */
+    private static class RawLogReader {
+        private static final Pattern COMMIT = Pattern.compile("^commit ([0-9a-f]+)(?: \\(from ([0-9a-f]+)\\))?$");
+        private static final Pattern NAME_STATUS = Pattern.compile("^[A-Z][0-9]*\t(.+)$");
+
+        private final ChangedFilesHandler handler;
+        private final boolean firstParent;
+        private final List<String> parents = new ArrayList<>();
+        private String revision;
+        private String parent;
+        private boolean inHeader;
+        private int commits;
+
+        RawLogReader(ChangedFilesHandler handler, boolean firstParent) {
+            this.handler = handler;
+            this.firstParent = firstParent;
+        }
+
+        void processLine(String line) {
+            Matcher commit = COMMIT.matcher(line);
+            if (commit.matches()) {
+                if (!commit.group(1).equals(revision)) {
+                    commits++;
+                }
+                revision = commit.group(1);
+                parent = commit.group(2);
+                parents.clear();
+                inHeader = true;
+            } else if (inHeader) {
+                if (line.startsWith("parent ") && !(firstParent && !parents.isEmpty())) {
+                    parents.add(line.substring("parent ".length()));
+                } else if (line.isEmpty()) {
+                    inHeader = false;
+                    handler.diff(revision, List.copyOf(parents), parent != null || parents.isEmpty() ? parent : parents.get(0));
+                }
+            } else {
+                Matcher file = NAME_STATUS.matcher(line);
+                if (file.matches()) {
+                    handler.file(file.group(1));
+                }
+            }
+        }
+    }
+
     public List<Revision> getRevisionsSince(String revision) {
         return getRevisionsSince(revision, null);
     }
 
+    /**
+     * @return the revisions after {@code revision} which touched any of {@code subPaths}, newest first. If the branch
+     * no longer contains {@code revision}, e.g. because it was force-pushed, only the latest revision since the point
+     * where the histories diverged (or at all, if they have nothing in common) is returned, marked as
+     * {@link Revision#getRewrittenRevision() replacing} {@code revision}, rather than everything which is not an
+     * ancestor of it.
+     */
     public List<Revision> getRevisionsSince(String revision, List<String> subPaths) {
-        return gitLog(logArgs(subPaths, String.format("%s..%s", revision, gitConfig.getRemoteBranch())));
+        String tip = gitConfig.getRemoteBranch();
+        String mergeBase = mergeBase(revision, tip);
+        if (revision.equals(mergeBase)) {
+            return gitLog(logArgs(subPaths, String.format("%s..%s", revision, tip)));
+        }
+        List<Revision> latest = gitLog(logArgs(subPaths, "-1", mergeBase == null ? tip : mergeBase + ".." + tip));
+        latest.forEach(rewritten -> rewritten.setRewrittenRevision(revision));
+        return latest;
+    }
+
+    /**
+     * @return the best common ancestor of both commits, or {@code null} if they have none or either is unknown.
+     */
+    String mergeBase(String commit, String otherCommit) {
+        try {
+            return runAndGetOutput(Console.createCommand("merge-base", commit, otherCommit)).stdOut().stream().findFirst().orElse(null);
+        } catch (RuntimeException e) {
+            return null;
+        }
     }
 
     private String[] logArgs(String... revisionLimits) {
@@ -121,6 +426,7 @@ public class GitHelper {
     private String[] logArgs(List<String> subPaths, String... revisionLimits) {
         String[] logs = of(
                 of("log", "--date=iso-strict", "--pretty=medium", "--no-decorate", "--no-color"),
+                firstParent() ? of("--first-parent") : Stream.<String>empty(),
                 of(revisionLimits),
                 Stream.ofNullable(subPaths).flatMap(paths -> of("--")),
                 Stream.ofNullable(subPaths).flatMap(paths -> subPaths.stream().map(String::trim))
@@ -131,7 +437,20 @@ public class GitHelper {
         return logs;
     }
 
+    /**
+     * Whether history is walked along first parents only, summarising each merge by its diff against its first
+     * parent rather than listing the commits it brought in. Requires git 2.31 or later.
+     */
+    private boolean firstParent() {
+        return gitConfig != null && gitConfig.isFirstParent();
+    }
+
     public Revision getDetailsForRevision(String sha) {
+        RevisionStore store = revisionStore();
+        Revision stored = store == null ? null : store.get(sha);
+        if (stored != null) {
+            return stored;
+        }
         return gitLog(logArgs("-1", sha))
                 .stream()
                 .findFirst()
@@ -139,6 +458,20 @@ public class GitHelper {
     }
 
     public Map<String, String> getBranchToRevisionMap(String pattern) {
+        Map<String, String> refs = repositoryFiles().map(RepositoryFiles::refs).orElse(null);
+        if (refs != null) {
+            Map<String, String> branchToRevisionMap = new HashMap<>();
+            refs.forEach((ref, revision) -> {
+                if (ref.contains(pattern)) {
+                    String branch = ref.replace(pattern, "");
+                    if (!branch.equals("HEAD")) {
+                        branchToRevisionMap.put(branch, revision);
+                    }
+                }
+            });
+            return branchToRevisionMap;
+        }
+
         CommandLine gitCmd = Console.createCommand("show-ref");
         List<String> outputLines = runAndGetOutput(gitCmd).stdOut();
         Map<String, String> branchToRevisionMap = new HashMap<>();
@@ -157,51 +490,107 @@ public class GitHelper {
 
     private List<Revision> gitLog(String... args) {
         CommandLine gitLog = Console.createCommand(args);
-        List<String> gitLogOutput = runAndGetOutput(gitLog).stdOut();
-
-        List<Revision> revisions = new GitModificationParser().parse(gitLogOutput);
-        for (Revision revision : revisions) {
-            addModifiedFiles(revision);
+        GitModificationParser parser = new GitModificationParser();
+        runAndHandleLines(gitLog, parser::processLine);
+
+        List<Revision> revisions = parser.revisions();
+        RevisionStore store = revisionStore();
+        List<Revision> unknown = revisions;
+        if (store != null) {
+            unknown = new ArrayList<>();
+            for (ListIterator<Revision> it = revisions.listIterator(); it.hasNext(); ) {
+                Revision revision = it.next();
+                Revision stored = store.get(revision.getRevision());
+                if (stored != null) {
+                    it.set(stored);
+                } else {
+                    unknown.add(revision);
+                }
+            }
+        }
+        Parallel.forEach(String.valueOf(workingDir), Integer.getInteger(DIFF_PARALLELISM, defaultParallelism()), unknown, this::addModifiedFiles);
+        if (store != null) {
+            unknown.forEach(store::put);
         }
         return revisions;
     }
 
-    private void addModifiedFiles(Revision revision) {
-        List<String> diffTreeOutput = diffTree(revision.getRevision()).stdOut();
+    /**
+     * @return the store of revisions already parsed from the repository, for polls, which run against bare
+     * repositories; {@code null} otherwise, if stores are disabled, or if the repository is shallow, as diff-tree
+     * lists every file of a boundary commit as added.
+     */
+    private RevisionStore revisionStore() {
+        if (gitConfig == null || !gitConfig.isBare() || new File(workingDir, "shallow").exists()) {
+            return null;
+        }
+        return RevisionStore.forClone(workingDir, gitConfig.isFirstParent());
+    }
+
+    /**
+     * Drops revisions the repository no longer contains, e.g. after a force-push, from its revision store.
+     */
+    private void compactRevisionStore() {
+        RevisionStore store = revisionStore();
+        if (store == null || !store.isCompactionDue()) {
+            return;
+        }
+        Set<String> stored = store.revisions();
+        Set<String> reachable = new HashSet<>();
+        runAndHandleLines(Console.createCommand("rev-list", "--all"), sha -> {
+            if (stored.contains(sha)) {
+                reachable.add(sha);
+            }
+        });
+        store.compact(reachable);
+    }
 
-        for (String resultLine : diffTreeOutput) {
+    /**
+     * Records the files changed by the revision as diff-tree streams them, keeping at most
+     * {@value #MAX_MODIFIED_FILES} (default 10000) of them and only counting the rest.
+     */
+    private void addModifiedFiles(Revision revision) {
+        int maxModifiedFiles = Integer.getInteger(MAX_MODIFIED_FILES, 10_000);
+        int[] recorded = {0};
+        diffTree(revision.getRevision(), resultLine -> {
             // First line is the node
             if (resultLine.equals(revision.getRevision())) {
-                continue;
+                return;
             }
 
             Matcher m = matchResultLine(resultLine);
             if (!m.find()) {
-                throw new RuntimeException(String.format("Unable to parse git-diff-tree output line: %s%nFrom output:%n %s", resultLine, String.join(System.lineSeparator(), diffTreeOutput)));
+                throw new RuntimeException(String.format("Unable to parse git-diff-tree output line for %s: %s", revision.getRevision(), resultLine));
             }
-            revision.createModifiedFile(m.group(2), parseGitAction(m.group(1).charAt(0)));
-        }
+            if (recorded[0] < maxModifiedFiles) {
+                revision.createModifiedFile(m.group(2), parseGitAction(m.group(1).charAt(0)));
+                recorded[0]++;
+            } else {
+                revision.setOmittedModifiedFiles(revision.getOmittedModifiedFiles() + 1);
+            }
+        });
     }
 
-    private ConsoleResult diffTree(String node) {
-        CommandLine gitCmd = Console.createCommand("diff-tree", "--name-status", "--root", "-r", "-c", node);
-        return runAndGetOutput(gitCmd);
+    private void diffTree(String node, Consumer<String> lineHandler) {
+        String mergeDiff = firstParent() ? "--diff-merges=first-parent" : "-c";
+        CommandLine gitCmd = Console.createCommand("diff-tree", "--name-status", "--root", "-r", mergeDiff, node);
+        runAndHandleLines(gitCmd, lineHandler);
     }
 
     private Matcher matchResultLine(String resultLine) {
         return GIT_DIFF_TREE_PATTERN.matcher(resultLine);
     }
 
-    private String parseGitAction(char action) {
+    private ModifiedFile.Action parseGitAction(char action) {
         switch (action) {
             case 'A':
-                return "added";
+                return ModifiedFile.Action.ADDED;
             case 'M':
-                return "modified";
+                return ModifiedFile.Action.MODIFIED;
             case 'D':
-                return "deleted";
+                return ModifiedFile.Action.DELETED;
             default:
-                return "unknown";
+                return ModifiedFile.Action.UNKNOWN;
         }
     }
 
@@ -218,6 +607,9 @@ public class GitHelper {
     public void fetch(String refSpec) {
         stdOut.consumeLine("[GIT] Fetching changes");
         List<String> args = new ArrayList<>(Arrays.asList("fetch", "origin", "--prune", "--recurse-submodules=no"));
+        if (gitConfig != null && gitConfig.isTagPattern()) {
+            args.add("--tags");
+        }
         if (!StringUtil.isBlank(refSpec)) {
             args.add(refSpec);
         }
@@ -226,7 +618,11 @@ public class GitHelper {
 
     private void fetchToDepth(int depth) {
         stdOut.consumeLine(String.format("[GIT] Fetching to commit depth %s", depth == Integer.MAX_VALUE ? "[INFINITE]" : depth));
-        runOrBomb(Console.createCommand("fetch", "origin", "--depth=" + depth, "--recurse-submodules=no"));
+        List<String> args = new ArrayList<>(List.of("fetch", "origin", "--depth=" + depth, "--recurse-submodules=no"));
+        if (gitConfig.isTagPattern()) {
+            args.add("--tags");
+        }
+        runOrBomb(Console.createCommand(args.toArray(new String[0])));
     }
 
     public void resetHard(String revision) {
@@ -234,7 +630,11 @@ public class GitHelper {
 
         stdOut.consumeLine("[GIT] Updating working copy to revision " + revision);
         CommandLine gitResetHard = Console.createCommand("reset", "--hard", revision);
-        runOrBomb(gitResetHard);
+        try {
+            runOrBomb(gitResetHard);
+        } finally {
+            workingTreeChanged();
+        }
     }
 
     private void unshallowIfNecessary(int additionalFetchDepth, String revision) {
@@ -252,25 +652,32 @@ public class GitHelper {
         fetchToDepth(Integer.MAX_VALUE);
     }
 
+    /**
+     * @return whether {@code revision} is in the fetched history of the material's branch or, for materials monitoring a
+     * branch or tag pattern, of any remote branch or tag.
+     */
     private boolean branchContains(String revision) {
         try {
             ConsoleResult result = runAndGetOutput(Console.createCommand("branch", "-r", "--contains", revision));
-            return result.stdOut().stream().anyMatch(line -> line.contains(gitConfig.getRemoteBranch()));
+            String branch = gitConfig.isBranchPattern() || gitConfig.isTagPattern() ? "origin/" : gitConfig.getRemoteBranch();
+            if (result.stdOut().stream().anyMatch(line -> line.contains(branch))) {
+                return true;
+            }
+            return gitConfig.isTagPattern() && !runAndGetOutput(Console.createCommand("tag", "--contains", revision)).stdOut().isEmpty();
         } catch (Exception ignore) {
             return false;
         }
     }
 
     protected boolean shouldReset() {
-        return !gitConfig.isNoCheckout();
+        return !gitConfig.isNoCheckout() && !gitConfig.isBare();
     }
 
     public void cleanAllUnversionedFiles() {
         stdOut.consumeLine("[GIT] Cleaning all unversioned files in working copy");
         if (isSubmoduleEnabled()) {
-            for (Map.Entry<String, String> submoduleFolder : submoduleUrls().entrySet()) {
-                cleanUnversionedFiles(new File(workingDir, submoduleFolder.getKey()));
-            }
+            List<File> submoduleDirs = submoduleUrls().keySet().stream().map(folder -> new File(workingDir, folder)).toList();
+            Parallel.forEach(workingDir + "#submodules", submoduleJobs(), submoduleDirs, this::cleanUnversionedFiles);
         }
         cleanUnversionedFiles(workingDir);
     }
@@ -283,9 +690,18 @@ public class GitHelper {
     public void gc() {
         stdOut.consumeLine("[GIT] Performing git gc");
         runOrBomb(Console.createCommand("gc", "--auto"));
+        compactRevisionStore();
     }
 
     public Map<String, String> submoduleUrls() {
+        return state().submoduleUrls();
+    }
+
+    private Map<String, String> readSubmoduleUrls() {
+        Map<String, String> fromFiles = repositoryFiles().map(files -> files.configValues(SUBMODULE_URL_KEY)).orElse(null);
+        if (fromFiles != null) {
+            return fromFiles;
+        }
         CommandLine gitConfig = Console.createCommand("config", "--get-regexp", "^submodule\\..+\\.url");
         List<String> submoduleList = new ArrayList<>();
         try {
@@ -340,22 +756,38 @@ public class GitHelper {
 
     public void submoduleInit() {
         CommandLine gitSubModuleInit = Console.createCommand("submodule", "init");
-        runOrBomb(gitSubModuleInit);
+        try {
+            runOrBomb(gitSubModuleInit);
+        } finally {
+            submoduleConfigChanged();
+        }
     }
 
     public void submoduleSync() {
-        CommandLine gitSubModuleSync = Console.createCommand("submodule", "sync");
-        runOrBomb(gitSubModuleSync);
-
-        CommandLine gitSubModuleForEachSync = Console.createCommand("submodule", "foreach", "--recursive", "git", "submodule", "sync");
-        runOrBomb(gitSubModuleForEachSync);
+        CommandLine gitSubModuleSync = Console.createCommand("submodule", "sync", "--recursive");
+        try {
+            runOrBomb(gitSubModuleSync);
+        } finally {
+            submoduleConfigChanged();
+        }
     }
 
     public void submoduleUpdate() {
-        CommandLine gitSubModuleUpdate = Console.createCommand(concat(gitSubmoduleConfigArgs().stream(), of("submodule", "update")).toArray(String[]::new));
+        CommandLine gitSubModuleUpdate = Console.createCommand(concat(gitSubmoduleConfigArgs().stream(), of("submodule", "update", "--jobs", String.valueOf(submoduleJobs()))).toArray(String[]::new));
         runOrBomb(gitSubModuleUpdate);
     }
 
+    /**
+     * @return how many submodules to fetch, update or clean at once, from {@value #SUBMODULE_JOBS}.
+     */
+    private static int submoduleJobs() {
+        return Math.max(1, Integer.getInteger(SUBMODULE_JOBS, defaultParallelism()));
+    }
+
+    private static int defaultParallelism() {
+        return Math.min(4, Runtime.getRuntime().availableProcessors());
+    }
+
     public void init() {
         CommandLine gitCmd = Console.createCommand("init");
         runOrBomb(gitCmd);
@@ -393,8 +825,12 @@ public class GitHelper {
 
     public void removeSubmoduleSectionsFromGitConfig() {
         stdOut.consumeLine("[GIT] Cleaning submodule configurations in .git/config");
-        for (String submoduleFolder : submoduleUrls().keySet()) {
-            configRemoveSection("submodule." + submoduleFolder);
+        try {
+            for (String submoduleFolder : submoduleUrls().keySet()) {
+                configRemoveSection("submodule." + submoduleFolder);
+            }
+        } finally {
+            submoduleConfigChanged();
         }
     }
 
@@ -434,11 +870,37 @@ public class GitHelper {
     }
 
     private ConsoleResult runAndGetOutput(CommandLine gitCmd, File workingDir) {
-        return runAndGetOutput(gitCmd, workingDir, new ProcessOutputStreamConsumer(new InMemoryConsumer()), new ProcessOutputStreamConsumer(new InMemoryConsumer()));
+        return runAndGetOutput(gitCmd, workingDir, new ProcessOutputStreamConsumer(new InMemoryConsumer()), new ProcessOutputStreamConsumer(new BoundedConsumer()));
+    }
+
+    private void runAndHandleLines(CommandLine gitCmd, Consumer<String> lineHandler) {
+        LineHandlerConsumer lineHandlerConsumer = new LineHandlerConsumer(lineHandler);
+        runAndGetOutput(gitCmd, workingDir, new ProcessOutputStreamConsumer(lineHandlerConsumer), new ProcessOutputStreamConsumer(new BoundedConsumer()));
+        lineHandlerConsumer.rethrowFailure();
     }
 
     private ConsoleResult runAndGetOutput(CommandLine gitCmd, File workingDir, ProcessOutputStreamConsumer stdOut, ProcessOutputStreamConsumer stdErr) {
-        return Console.runOrBomb(gitCmd, workingDir, stdOut, stdErr, gitConfig == null ? List.of() : gitConfig.redactables());
+        if (gitConfig != null && REMOTE_SUBCOMMANDS.contains(CommandTimeouts.subcommand(gitCmd))) {
+            return runAgainstRemote(gitCmd, workingDir, stdOut, stdErr, false);
+        }
+        return Console.runOrBomb(gitCmd, workingDir, stdOut, stdErr, gitConfig == null ? List.of() : gitConfig.redactables(), null, priority(gitCmd));
+    }
+
+    private ProcessScheduler.Priority priority(CommandLine gitCmd) {
+        return "gc".equals(CommandTimeouts.subcommand(gitCmd)) ? ProcessScheduler.Priority.MAINTENANCE : priority;
+    }
+
+    /**
+     * Runs a command which contacts the material's remote through its {@link RemoteCircuitBreaker}, failing fast while
+     * the remote is known to be failing, unless {@code probe} is set.
+     */
+    private ConsoleResult runAgainstRemote(CommandLine gitCmd, File workingDir, ProcessOutputStreamConsumer stdOut, ProcessOutputStreamConsumer stdErr, boolean probe) {
+        ErrorTail errorTail = new ErrorTail(stdErr);
+        ProcessScheduler.Priority priority = probe ? ProcessScheduler.Priority.INTERACTIVE : priority(gitCmd);
+        Supplier<ConsoleResult> run = () -> Console.runOrBomb(gitCmd, workingDir, stdOut, new ProcessOutputStreamConsumer(errorTail),
+                gitConfig.redactables(), RepositoryIdentity.of(gitConfig).host(), priority);
+        RemoteCircuitBreaker circuitBreaker = RemoteCircuitBreaker.instance();
+        return probe ? circuitBreaker.probe(gitConfig.getUrl(), run, errorTail::lines) : circuitBreaker.call(gitConfig.getUrl(), run, errorTail::lines);
     }
 
     /**
@@ -473,35 +935,183 @@ public class GitHelper {
     public boolean cloneOrFetch(String refSpec, CloneFailureBehavior onFailure) {
         boolean freshClone = false;
         try {
+            if (gitConfig.isBare() && new File(workingDir, ".git").isDirectory()) {
+                convertToBareRepository();
+            }
             if (!isGitRepository() || !isSameRepository()) {
-                setupWorkingDir();
                 freshClone = true;
-                cloneRepository();
+                if (gitConfig.isBare() && stagingArea().adopt(gitConfig, workingDir)) {
+                    useAdoptedRepository();
+                } else {
+                    setupWorkingDir();
+                    cloneRepository();
+                }
+            } else {
+                updateRemoteUrl();
             }
 
             fetchAndResetToHead(refSpec);
             return freshClone;
         } catch (RuntimeException e) {
             if (freshClone && onFailure == CloneFailureBehavior.REMOVE_IF_CREATED) {
-                FileUtils.deleteQuietly(workingDir);
+                if (gitConfig.isBare()) {
+                    // keep whatever was already received, for the next attempt to adopt and fetch into
+                    stagingArea().park(gitConfig, workingDir);
+                } else {
+                    FileUtils.deleteQuietly(workingDir);
+                }
             }
             throw e;
         }
     }
 
+    /**
+     * Brings the working copy to {@code revision} in a single pass, for agent checkouts: a fresh clone is made without a
+     * checkout, an existing one is fetched once, and the working tree, including submodules, is then reset and cleaned
+     * once, directly at {@code revision}. An existing working copy which is already cleanly checked out at
+     * {@code revision} is left untouched, without fetching.
+     *
+     * @return {@code true} if this invocation freshly cloned the repository, {@code false} if an existing clone was
+     * reused.
+     */
+    public boolean cloneOrFetchToRevision(String revision) {
+        boolean freshClone = !isGitRepository() || !isSameRepository();
+        if (freshClone) {
+            setupWorkingDir();
+            cloneRepository(false);
+            if (gitConfig.isTagPattern()) {
+                // a clone only brings along the tags on its branches
+                fetch(null);
+            }
+        } else if (shouldReset() && isCleanlyCheckedOutAt(revision)) {
+            stdOut.consumeLine(String.format("[GIT] Working copy %s is already at revision %s", workingDir, revision));
+            return false;
+        } else {
+            updateRemoteUrl();
+            fetch(null);
+            gc();
+        }
+
+        if (shouldReset()) {
+            withSharedState(() -> {
+                stdOut.consumeLine(String.format("[GIT] Reset working directory %s", workingDir));
+                if (isSubmoduleEnabled()) {
+                    removeSubmoduleSectionsFromGitConfig();
+                }
+                resetHard(revision);
+                if (isSubmoduleEnabled()) {
+                    checkoutAllModifiedFilesInSubmodules();
+                    updateSubmoduleWithInit();
+                }
+                cleanAllUnversionedFiles();
+            });
+        }
+        return freshClone;
+    }
+
+    private boolean isCleanlyCheckedOutAt(String revision) {
+        try {
+            List<String> commits = runAndGetOutput(Console.createCommand("rev-parse", "HEAD^{commit}", revision + "^{commit}")).stdOut();
+            return commits.size() == 2
+                    && commits.get(0).equals(commits.get(1))
+                    && runAndGetOutput(Console.createCommand("status", "--porcelain")).stdOut().isEmpty();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Points a bare repository taken over from the {@link StagingArea} at this material's remote URL (which may carry
+     * different credentials) and branch.
+     */
+    private void useAdoptedRepository() {
+        stdOut.consumeLine(String.format("[GIT] Using staged clone of %s", gitConfig.getUrl()));
+        runOrBomb(Console.createCommand("remote", "set-url", "origin", gitConfig.getEffectiveUrl()));
+        runOrBomb(Console.createCommand("symbolic-ref", "HEAD", "refs/remotes/" + gitConfig.getRemoteBranch()));
+    }
+
+    private StagingArea stagingArea() {
+        return stagingArea == null ? StagingArea.instance() : stagingArea;
+    }
+
+    GitHelper withStagingArea(StagingArea stagingArea) {
+        this.stagingArea = stagingArea;
+        return this;
+    }
+
+    GitHelper withPriority(ProcessScheduler.Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
     private boolean isGitRepository() {
+        if (gitConfig.isBare()) {
+            return new File(workingDir, "HEAD").isFile()
+                    && new File(workingDir, "objects").isDirectory()
+                    && new File(workingDir, "refs").isDirectory()
+                    && !new File(workingDir, ".git").exists();
+        }
         File dotGit = new File(workingDir, ".git");
         return workingDir.exists() && dotGit.exists() && dotGit.isDirectory();
     }
 
+    /**
+     * Converts a flyweight cloned with a working directory (by earlier plugin versions) into a bare repository in place,
+     * keeping its objects and remote-tracking refs. If the conversion fails part way, the flyweight is no longer
+     * recognised as a repository and is cloned afresh.
+     */
+    private void convertToBareRepository() {
+        stdOut.consumeLine(String.format("[GIT] Converting %s to a bare repository", workingDir));
+        File dotGit = new File(workingDir, ".git");
+        try {
+            for (File file : Objects.requireNonNull(workingDir.listFiles())) {
+                if (!file.equals(dotGit)) {
+                    FileUtils.forceDelete(file);
+                }
+            }
+            for (File file : Objects.requireNonNull(dotGit.listFiles())) {
+                Files.move(file.toPath(), new File(workingDir, file.getName()).toPath());
+            }
+            Files.delete(dotGit.toPath());
+            Files.deleteIfExists(new File(workingDir, "index").toPath());
+            runOrBomb(Console.createCommand("config", "--bool", "core.bare", "true"));
+            runOrBomb(Console.createCommand("symbolic-ref", "HEAD", "refs/remotes/" + gitConfig.getRemoteBranch()));
+        } catch (IOException | RuntimeException e) {
+            stdErr.consumeLine(String.format("[GIT] Could not convert %s to a bare repository, it will be cloned again: %s", workingDir, e.getMessage()));
+        }
+    }
+
     public boolean isSameRepository() {
         try {
-            return workingRepositoryUrl().equals(gitConfig.getEffectiveUrl());
+            return RepositoryIdentity.of(workingRepositoryUrl()).equals(RepositoryIdentity.of(gitConfig));
         } catch (Exception e) {
             return false;
         }
     }
 
+    /**
+     * Points {@code origin} at the configured URL, when the repository is the same but the URL has been respelled or
+     * its credentials changed, instead of cloning it again.
+     */
+    private void updateRemoteUrl() {
+        if (!gitConfig.getEffectiveUrl().equals(workingRepositoryUrl())) {
+            stdOut.consumeLine(String.format("[GIT] Updating remote URL to %s", gitConfig.getUrl()));
+            runOrBomb(Console.createCommand("remote", "set-url", "origin", gitConfig.getEffectiveUrl()));
+        }
+    }
+
+    private void workingTreeChanged() {
+        if (state != null) {
+            state.workingTreeChanged();
+        }
+    }
+
+    private void submoduleConfigChanged() {
+        if (state != null) {
+            state.submoduleConfigChanged();
+        }
+    }
+
     private void setupWorkingDir() {
         FileUtils.deleteQuietly(workingDir);
         try {
@@ -524,22 +1134,47 @@ public class GitHelper {
         gc();
 
         if (shouldReset()) {
-            stdOut.consumeLine(String.format("[GIT] Reset working directory %s", workingDir));
-            cleanAllUnversionedFiles();
-            if (isSubmoduleEnabled()) {
-                removeSubmoduleSectionsFromGitConfig();
-            }
-            resetHard(revision);
-            if (isSubmoduleEnabled()) {
-                checkoutAllModifiedFilesInSubmodules();
-                updateSubmoduleWithInit();
-            }
-            cleanAllUnversionedFiles();
+            withSharedState(() -> {
+                stdOut.consumeLine(String.format("[GIT] Reset working directory %s", workingDir));
+                cleanAllUnversionedFiles();
+                if (isSubmoduleEnabled()) {
+                    removeSubmoduleSectionsFromGitConfig();
+                }
+                resetHard(revision);
+                if (isSubmoduleEnabled()) {
+                    checkoutAllModifiedFilesInSubmodules();
+                    updateSubmoduleWithInit();
+                }
+                cleanAllUnversionedFiles();
+            });
         }
     }
 
     public boolean isSubmoduleEnabled() {
-        return new File(workingDir, ".gitmodules").exists();
+        return state().isSubmoduleEnabled();
+    }
+
+    /**
+     * @return the state shared by the steps of the operation in progress, or a fresh one outside of any operation.
+     */
+    private RepositoryState state() {
+        return state != null ? state : new RepositoryState(workingDir, this::readSubmoduleUrls);
+    }
+
+    /**
+     * Runs {@code operation} with a single {@link RepositoryState} shared by all of its steps.
+     */
+    private void withSharedState(Runnable operation) {
+        if (state != null) {
+            operation.run();
+            return;
+        }
+        state = new RepositoryState(workingDir, this::readSubmoduleUrls);
+        try {
+            operation.run();
+        } finally {
+            state = null;
+        }
     }
 
     public void updateSubmoduleWithInit() {
@@ -564,7 +1199,44 @@ public class GitHelper {
         /**
          * If <em>this</em> invocation created the working directory and the clone/fetch then fails, delete it before
          * rethrowing, so a first-usage poll does not leave an orphaned, partially-cloned flyweight directory behind.
+         * A bare repository is moved to the {@link StagingArea} instead, so the next attempt resumes from the objects
+         * already received rather than starting over.
          */
         REMOVE_IF_CREATED
     }
+
+    /**
+     * Passes error output on to the helper's consumer, keeping the last few lines to tell what a failure was down to.
+     */
+    private static class ErrorTail implements StreamConsumer {
+        private static final int MAX_LINES = 20;
+        private final ProcessOutputStreamConsumer delegate;
+        private final Deque<String> tail = new ArrayDeque<>();
+
+        ErrorTail(ProcessOutputStreamConsumer delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void consumeLine(String line) {
+            delegate.consumeLine(line);
+            synchronized (tail) {
+                if (tail.size() == MAX_LINES) {
+                    tail.removeFirst();
+                }
+                tail.addLast(line);
+            }
+        }
+
+        @Override
+        public List<String> asList() {
+            return delegate.output();
+        }
+
+        List<String> lines() {
+            synchronized (tail) {
+                return new ArrayList<>(tail);
+            }
+        }
+    }
 }
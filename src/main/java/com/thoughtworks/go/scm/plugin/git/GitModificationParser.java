@@ -7,6 +7,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class GitModificationParser {
+    public static final String MAX_COMMENT_LENGTH = "git.path.material.max.comment.length";
     private static final String SPACES = "\\s+";
     private static final String COMMENT_INDENT = "\\s{4}";
     private static final String COMMENT_TEXT = "(.*)";
@@ -21,18 +22,45 @@ public class GitModificationParser {
     private static final Pattern COMMENT_PATTERN = Pattern.compile("^" + COMMENT_INDENT + COMMENT_TEXT + "$");
 
     private final LinkedList<Revision> revisions = new LinkedList<>();
+    private final PathDictionary pathDictionary = new PathDictionary();
+    private final int maxCommentLength;
+    private final StringBuilder comment = new StringBuilder();
+    private int omittedCommentLength;
+
+    public GitModificationParser() {
+        this(Integer.getInteger(MAX_COMMENT_LENGTH, 64 * 1024));
+    }
+
+    /**
+     * @param maxCommentLength the number of characters of each commit message to keep; the rest is counted, but
+     *                         never buffered
+     */
+    public GitModificationParser(int maxCommentLength) {
+        this.maxCommentLength = maxCommentLength;
+    }
 
     public List<Revision> parse(List<String> output) {
         for (String line : output) {
             processLine(line);
         }
+        return revisions();
+    }
+
+    /**
+     * @return the revisions parsed so far, with the comment of the last one completed
+     */
+    public List<Revision> revisions() {
+        completeComment();
         return revisions;
     }
 
     public void processLine(String line) {
         Matcher matcher = COMMIT_PATTERN.matcher(line);
         if (matcher.matches()) {
-            revisions.add(new Revision(matcher.group(1), null, "", "", null, null));
+            completeComment();
+            Revision revision = new Revision(matcher.group(1), null, "", "", null, null);
+            revision.usePathDictionary(pathDictionary);
+            revisions.add(revision);
         }
         Matcher mergeMatcher = MERGE_PATTERN.matcher(line);
         if(mergeMatcher.matches()) {
@@ -48,10 +76,31 @@ public class GitModificationParser {
         }
         Matcher commentMatcher = COMMENT_PATTERN.matcher(line);
         if (commentMatcher.matches()) {
+            appendComment(commentMatcher.group(1));
+        }
+    }
+
+    private void appendComment(String text) {
+        String separator = comment.length() > 0 ? "\n" : "";
+        int remaining = maxCommentLength - comment.length() - separator.length();
+        if (omittedCommentLength == 0 && text.length() <= remaining) {
+            comment.append(separator).append(text);
+        } else if (omittedCommentLength == 0 && remaining > 0) {
+            int kept = Character.isHighSurrogate(text.charAt(remaining - 1)) ? remaining - 1 : remaining;
+            comment.append(separator).append(text, 0, kept);
+            omittedCommentLength += text.length() - kept;
+        } else {
+            omittedCommentLength += separator.length() + text.length();
+        }
+    }
+
+    private void completeComment() {
+        if (!revisions.isEmpty() && (comment.length() > 0 || omittedCommentLength > 0)) {
             Revision last = revisions.getLast();
-            String comment = last.getComment();
-            if (!comment.isEmpty()) comment += "\n";
-            last.setComment(comment + commentMatcher.group(1));
+            last.setComment(comment.toString());
+            last.setOmittedCommentLength(omittedCommentLength);
         }
+        comment.setLength(0);
+        omittedCommentLength = 0;
     }
 }
@@ -4,9 +4,13 @@ import java.util.Objects;
 
 public class ModifiedFile {
     private final String fileName;
-    private final String action;
+    private final Action action;
 
     public ModifiedFile(String fileName, String action) {
+        this(fileName, Action.fromName(action));
+    }
+
+    ModifiedFile(String fileName, Action action) {
         this.fileName = fileName;
         this.action = action;
     }
@@ -16,12 +20,16 @@ public class ModifiedFile {
     }
 
     public String getAction() {
+        return action.getName();
+    }
+
+    Action action() {
         return action;
     }
 
     @Override
     public String toString() {
-        return String.format("ModifiedFile{fileName='%s', action='%s'}", fileName, action);
+        return String.format("ModifiedFile{fileName='%s', action='%s'}", getFileName(), getAction());
     }
 
     @Override
@@ -31,14 +39,41 @@ public class ModifiedFile {
 
         ModifiedFile that = (ModifiedFile) o;
 
-        if (!Objects.equals(fileName, that.fileName)) return false;
-        return Objects.equals(action, that.action);
+        if (!Objects.equals(getFileName(), that.getFileName())) return false;
+        return action == that.action;
     }
 
     @Override
     public int hashCode() {
+        String fileName = getFileName();
         int result = fileName != null ? fileName.hashCode() : 0;
-        result = 31 * result + (action != null ? action.hashCode() : 0);
+        result = 31 * result + action.hashCode();
         return result;
     }
+
+    public enum Action {
+        ADDED("added"),
+        MODIFIED("modified"),
+        DELETED("deleted"),
+        UNKNOWN("unknown");
+
+        private final String name;
+
+        Action(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public static Action fromName(String name) {
+            for (Action action : values()) {
+                if (action.name.equals(name)) {
+                    return action;
+                }
+            }
+            return UNKNOWN;
+        }
+    }
 }
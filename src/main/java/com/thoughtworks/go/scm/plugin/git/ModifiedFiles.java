@@ -0,0 +1,85 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Compact list of the files a revision modified: per file, a reference to its directory as interned by a
+ * {@link PathDictionary}, the UTF-8 bytes of its name within that directory and one action byte. {@link ModifiedFile}
+ * instances and full paths are only materialized as elements are read, i.e. when the revision is rendered.
+ */
+class ModifiedFiles extends AbstractList<ModifiedFile> {
+    private static final ModifiedFile.Action[] ACTIONS = ModifiedFile.Action.values();
+
+    private final PathDictionary pathDictionary;
+    private String[] directories = new String[4];
+    private byte[][] names = new byte[4][];
+    private byte[] actions = new byte[4];
+    private int size;
+
+    ModifiedFiles(PathDictionary pathDictionary) {
+        this.pathDictionary = pathDictionary;
+    }
+
+    @Override
+    public ModifiedFile get(int index) {
+        checkIndex(index, size);
+        return new ModifiedFile(directories[index] + new String(names[index], StandardCharsets.UTF_8), ACTIONS[actions[index]]);
+    }
+
+    @Override
+    public ModifiedFile set(int index, ModifiedFile file) {
+        ModifiedFile previous = get(index);
+        store(index, file);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, ModifiedFile file) {
+        checkIndex(index, size + 1);
+        if (size == names.length) {
+            directories = Arrays.copyOf(directories, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+            actions = Arrays.copyOf(actions, size * 2);
+        }
+        System.arraycopy(directories, index, directories, index + 1, size - index);
+        System.arraycopy(names, index, names, index + 1, size - index);
+        System.arraycopy(actions, index, actions, index + 1, size - index);
+        store(index, file);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public ModifiedFile remove(int index) {
+        ModifiedFile removed = get(index);
+        System.arraycopy(directories, index + 1, directories, index, size - index - 1);
+        System.arraycopy(names, index + 1, names, index, size - index - 1);
+        System.arraycopy(actions, index + 1, actions, index, size - index - 1);
+        size--;
+        directories[size] = null;
+        names[size] = null;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void store(int index, ModifiedFile file) {
+        String path = file.getFileName();
+        String directory = pathDictionary.directory(path);
+        directories[index] = directory;
+        names[index] = path.substring(directory.length()).getBytes(StandardCharsets.UTF_8);
+        actions[index] = (byte) file.action().ordinal();
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+}
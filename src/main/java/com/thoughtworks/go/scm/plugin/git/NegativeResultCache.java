@@ -0,0 +1,75 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers, per repository and path set, the latest tip at which no revision touched any of the paths, so that a
+ * material whose paths match nothing (e.g. because of a typo) only has commits added since then checked on its next
+ * polls. Records expire after {@value #TTL} seconds (default one day), after which the whole history is checked again.
+ */
+public class NegativeResultCache {
+    public static final String TTL = "git.path.material.negative.result.ttl.seconds";
+    private static final int MAX_ENTRIES = 10_000;
+    private static NegativeResultCache instance;
+
+    private final Duration ttl;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    NegativeResultCache(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public static synchronized NegativeResultCache instance() {
+        if (instance == null) {
+            instance = new NegativeResultCache(Duration.ofSeconds(Long.getLong(TTL, Duration.ofDays(1).toSeconds())));
+        }
+        return instance;
+    }
+
+    /**
+     * @return the tip at which nothing touched {@code paths}, or {@code null} if there is no unexpired record of one.
+     */
+    public synchronized String noMatchTip(GitConfig gitConfig, List<String> paths) {
+        String key = key(gitConfig, paths);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expires.isBefore(Instant.now())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.tip;
+    }
+
+    /**
+     * Records that nothing touched {@code paths} up to {@code tip}, keeping the expiry of an earlier record for the same
+     * path set which {@code tip} was checked incrementally from.
+     */
+    public synchronized void recordNoMatch(GitConfig gitConfig, List<String> paths, String tip, boolean incremental) {
+        String key = key(gitConfig, paths);
+        Entry previous = entries.get(key);
+        Instant expires = incremental && previous != null ? previous.expires : Instant.now().plus(ttl);
+        entries.put(key, new Entry(tip, expires));
+    }
+
+    public synchronized void remove(GitConfig gitConfig, List<String> paths) {
+        entries.remove(key(gitConfig, paths));
+    }
+
+    private static String key(GitConfig gitConfig, List<String> paths) {
+        return BatchRevisionEvaluator.historyKey(gitConfig) + "\n" + String.join("\n", BatchRevisionEvaluator.normalize(paths));
+    }
+
+    private record Entry(String tip, Instant expires) {
+    }
+}
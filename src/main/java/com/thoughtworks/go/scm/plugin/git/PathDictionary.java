@@ -0,0 +1,28 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the directories of file paths, so that the many files a large commit touches under a common directory
+ * share a single copy of that directory's path instead of each carrying a full copy of it. A dictionary is shared by
+ * the revisions parsed from the same git output, whose modified files are listed in parallel, so it is safe for
+ * concurrent use.
+ */
+public class PathDictionary {
+    private final Map<String, String> directories = new ConcurrentHashMap<>();
+
+    /**
+     * @return the directory {@code path} is in, with a trailing slash, as the one instance kept for that directory;
+     * empty for a path without a directory.
+     */
+    String directory(String path) {
+        int end = path.lastIndexOf('/') + 1;
+        if (end == 0) {
+            return "";
+        }
+        String directory = path.substring(0, end);
+        String interned = directories.putIfAbsent(directory, directory);
+        return interned == null ? directory : interned;
+    }
+}
@@ -0,0 +1,59 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import java.util.*;
+
+/**
+ * Prefix trie over '/'-separated path segments, routing a changed file to every value registered against a path that
+ * is the file itself or one of its parent directories. Only plain paths can be routed this way; pathspecs using magic
+ * or glob syntax must be evaluated by git itself (see {@link #isRoutable(Collection)}).
+ */
+public class PathTrie<T> {
+    private final Node<T> root = new Node<>();
+
+    public static boolean isRoutable(Collection<String> paths) {
+        return paths != null && !paths.isEmpty() && paths.stream().allMatch(PathTrie::isRoutable);
+    }
+
+    static boolean isRoutable(String path) {
+        return path != null
+                && !path.isBlank()
+                && !path.trim().startsWith(":")
+                && path.chars().noneMatch(c -> c == '*' || c == '?' || c == '[' || c == '\\');
+    }
+
+    public void add(String path, T value) {
+        Node<T> node = root;
+        for (String segment : segments(path)) {
+            node = node.children.computeIfAbsent(segment, s -> new Node<>());
+        }
+        node.values.add(value);
+    }
+
+    public Set<T> match(String file) {
+        Set<T> matches = new LinkedHashSet<>(root.values);
+        Node<T> node = root;
+        for (String segment : segments(file)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                break;
+            }
+            matches.addAll(node.values);
+        }
+        return matches;
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.trim().split("/")) {
+            if (!segment.isEmpty() && !segment.equals(".")) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    private static class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private final Set<T> values = new LinkedHashSet<>();
+    }
+}
@@ -0,0 +1,156 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Stops contacting a remote which keeps failing to answer, so that every material polling a dead or misconfigured
+ * remote does not spawn git and wait for the network timeout, every poll. Remotes are told apart by their
+ * {@link RepositoryIdentity}.
+ * <p>
+ * After {@value #FAILURE_THRESHOLD} (default 3) consecutive failures which are down to the remote (authentication, DNS,
+ * timeouts and refused connections), calls fail fast for {@value #BACKOFF} seconds (default 60), doubling with every
+ * further failure up to {@value #MAX_BACKOFF} seconds (default 1800). Once that has passed, a single call is let
+ * through as a probe; its success closes the circuit again. Explicit connection checks always go through.
+ */
+public class RemoteCircuitBreaker {
+    public static final String FAILURE_THRESHOLD = "git.path.material.circuit.failure.threshold";
+    public static final String BACKOFF = "git.path.material.circuit.backoff.seconds";
+    public static final String MAX_BACKOFF = "git.path.material.circuit.max.backoff.seconds";
+    private static final Logger LOGGER = Logger.getLoggerFor(RemoteCircuitBreaker.class);
+    private static RemoteCircuitBreaker instance;
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    RemoteCircuitBreaker() {
+    }
+
+    public static synchronized RemoteCircuitBreaker instance() {
+        if (instance == null) {
+            instance = new RemoteCircuitBreaker();
+        }
+        return instance;
+    }
+
+    public enum FailureKind {
+        AUTHENTICATION("authentication failed", "could not read username", "could not read password",
+                "invalid username or password", "terminal prompts disabled", "permission denied (publickey",
+                "host key verification failed", "returned error: 401", "returned error: 403"),
+        DNS("could not resolve host", "could not resolve hostname", "name or service not known",
+                "temporary failure in name resolution", "nodename nor servname provided"),
+        TIMEOUT("timed out"),
+        UNREACHABLE("connection refused", "network is unreachable", "no route to host", "failed to connect to",
+                "connection reset", "returned error: 502", "returned error: 503", "returned error: 504");
+
+        private final List<String> symptoms;
+
+        FailureKind(String... symptoms) {
+            this.symptoms = List.of(symptoms);
+        }
+
+        /**
+         * @return what the remote failed with according to git's error output, or {@code null} if it does not look
+         * like the remote's fault (e.g. an unknown revision), which leaves the circuit as it is.
+         */
+        static FailureKind classify(List<String> errorLines) {
+            for (FailureKind kind : values()) {
+                for (String line : errorLines) {
+                    String lowerCase = line.toLowerCase(Locale.ROOT);
+                    if (kind.symptoms.stream().anyMatch(lowerCase::contains)) {
+                        return kind;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Runs {@code call} against the remote at {@code url} unless its circuit is open, in which case it fails fast.
+     *
+     * @param errorLines supplies git's error output once {@code call} has failed, to tell what the failure was down to.
+     */
+    public <T> T call(String url, Supplier<T> call, Supplier<List<String>> errorLines) {
+        Circuit circuit = circuit(url);
+        circuit.acquire();
+        return run(circuit, call, errorLines);
+    }
+
+    /**
+     * Like {@link #call}, but never fails fast, e.g. for a connection check the user asked for.
+     */
+    public <T> T probe(String url, Supplier<T> call, Supplier<List<String>> errorLines) {
+        return run(circuit(url), call, errorLines);
+    }
+
+    private Circuit circuit(String url) {
+        return circuits.computeIfAbsent(RepositoryIdentity.of(url).toString(), Circuit::new);
+    }
+
+    private <T> T run(Circuit circuit, Supplier<T> call, Supplier<List<String>> errorLines) {
+        try {
+            T result = call.get();
+            circuit.succeeded();
+            return result;
+        } catch (RuntimeException e) {
+            FailureKind kind = FailureKind.classify(errorLines.get());
+            if (kind == null) {
+                kind = FailureKind.classify(List.of(String.valueOf(e.getMessage())));
+            }
+            circuit.failed(kind, e.getMessage());
+            throw e;
+        }
+    }
+
+    private static class Circuit {
+        private final String remote;
+        private int failures;
+        private FailureKind lastKind;
+        private String lastError;
+        private Instant openUntil = Instant.MIN;
+        private boolean probing;
+
+        Circuit(String remote) {
+            this.remote = remote;
+        }
+
+        synchronized void acquire() {
+            if (failures < Integer.getInteger(FAILURE_THRESHOLD, 3)) {
+                return;
+            }
+            if (Instant.now().isBefore(openUntil) || probing) {
+                throw new RuntimeException(String.format("Not contacting %s after %d consecutive failures (%s), until %s: %s",
+                        remote, failures, lastKind.name().toLowerCase(Locale.ROOT), probing ? "a retry in progress completes" : openUntil, lastError));
+            }
+            probing = true;
+        }
+
+        synchronized void succeeded() {
+            failures = 0;
+            probing = false;
+        }
+
+        synchronized void failed(FailureKind kind, String error) {
+            probing = false;
+            if (kind == null) {
+                return;
+            }
+            failures++;
+            lastKind = kind;
+            lastError = error;
+            int threshold = Integer.getInteger(FAILURE_THRESHOLD, 3);
+            if (failures >= threshold) {
+                long backoff = Long.getLong(BACKOFF, 60) << Math.min(failures - threshold, 20);
+                openUntil = Instant.now().plus(Duration.ofSeconds(Math.min(backoff, Long.getLong(MAX_BACKOFF, 1800))));
+                LOGGER.warn(String.format("%s failed %d times in a row (%s), not contacting it until %s", remote, failures, kind, openUntil));
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Remembers what the remote's refs pointed to when last looked up successfully, per URL, credentials and ref, so that
+ * repeated connection checks (e.g. while a material is being edited) do not contact the remote each time. Records
+ * expire after {@value #TTL} seconds (default 10). Failed lookups are not remembered.
+ */
+public class RemoteRefCache {
+    public static final String TTL = "git.path.material.remote.ref.ttl.seconds";
+    private static final int MAX_ENTRIES = 1_000;
+    private static RemoteRefCache instance;
+
+    private final Duration ttl;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    RemoteRefCache(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public static synchronized RemoteRefCache instance() {
+        if (instance == null) {
+            instance = new RemoteRefCache(Duration.ofSeconds(Long.getLong(TTL, 10)));
+        }
+        return instance;
+    }
+
+    /**
+     * @param lookup    asks the remote what {@code ref} points to, {@code null} if it has no such ref.
+     * @param useCached whether an unexpired record may be returned instead of looking {@code ref} up again; a fresh
+     *                  lookup is remembered either way.
+     * @return what {@code ref} points to, or {@code null} if the remote has no such ref.
+     */
+    public String tip(GitConfig gitConfig, String ref, Supplier<String> lookup, boolean useCached) {
+        String key = key(gitConfig, ref);
+        if (useCached) {
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.expires.isAfter(Instant.now())) {
+                    return entry.tip.orElse(null);
+                }
+            }
+        }
+        // looked up outside the lock, so that a slow remote does not hold up lookups of others
+        String tip = lookup.get();
+        synchronized (this) {
+            entries.put(key, new Entry(Optional.ofNullable(tip), Instant.now().plus(ttl)));
+        }
+        return tip;
+    }
+
+    /**
+     * Keyed by a digest, so that credentials are not kept around in the clear.
+     */
+    private static String key(GitConfig gitConfig, String ref) {
+        String key = String.join("\n", gitConfig.getUrl(), String.valueOf(gitConfig.getUsername()), String.valueOf(gitConfig.getPassword()), ref);
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(Optional<String> tip, Instant expires) {
+    }
+}
@@ -0,0 +1,320 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a repository's remote URLs and refs straight from its {@code config}, {@code packed-refs} and loose ref files
+ * rather than by running git. Results are cached per repository and re-read once any of the files they came from has
+ * been modified, or when they were read within {@link #RACY_WINDOW} of such a modification, as a change made in the
+ * same file timestamp tick could otherwise go unnoticed.
+ * <p>
+ * Only what git itself would report from these files is answered; anything this reader does not understand (e.g.
+ * config includes) is reported as unknown, so that callers can fall back to asking git.
+ */
+public class RepositoryFiles {
+    static final Duration RACY_WINDOW = Duration.ofSeconds(2);
+    private static final Pattern OBJECT_ID = Pattern.compile("^[0-9a-f]{40}([0-9a-f]{24})?$");
+    private static final Map<Path, RepositoryFiles> REPOSITORIES = new ConcurrentHashMap<>();
+
+    private final Path gitDir;
+    private Cached<Map<String, List<String>>> config;
+    private Cached<Map<String, String>> refs;
+
+    private RepositoryFiles(Path gitDir) {
+        this.gitDir = gitDir;
+    }
+
+    public static RepositoryFiles of(File gitDir) {
+        return REPOSITORIES.computeIfAbsent(gitDir.toPath().toAbsolutePath().normalize(), RepositoryFiles::new);
+    }
+
+    /**
+     * @return the URL git uses for {@code remote}, or {@code null} if it is not configured or the config cannot be
+     * interpreted without git.
+     */
+    public synchronized String remoteUrl(String remote) {
+        Map<String, List<String>> values = config();
+        List<String> urls = values == null ? null : values.get("remote." + remote + ".url");
+        return urls == null || urls.isEmpty() ? null : urls.get(urls.size() - 1);
+    }
+
+    /**
+     * @return the last value given for every config key matching {@code key}, by the key's first group, or
+     * {@code null} if the config cannot be interpreted without git.
+     */
+    public synchronized Map<String, String> configValues(Pattern key) {
+        Map<String, List<String>> values = config();
+        if (values == null) {
+            return null;
+        }
+        Map<String, String> matching = new HashMap<>();
+        values.forEach((name, all) -> {
+            Matcher matcher = key.matcher(name);
+            if (matcher.matches() && !all.isEmpty()) {
+                matching.put(matcher.group(1), all.get(all.size() - 1));
+            }
+        });
+        return matching;
+    }
+
+    /**
+     * @return every ref below {@code refs/}, by full name, with the object id it (eventually) points to, as listed by
+     * {@code git show-ref}; or {@code null} if the refs cannot be read, e.g. because they are not kept in files.
+     */
+    public synchronized Map<String, String> refs() {
+        if (!hasFileRefs()) {
+            refs = null;
+            return null;
+        }
+        try {
+            Map<Path, FileStamp> stamps = refStamps();
+            if (refs == null || !refs.isValidFor(stamps)) {
+                refs = new Cached<>(stamps, readRefs());
+            }
+            return refs.value;
+        } catch (IOException e) {
+            refs = null;
+            return null;
+        }
+    }
+
+    /**
+     * @return whether refs are kept in {@code packed-refs} and loose ref files, rather than e.g. in a reftable, which
+     * leaves only a stub behind in {@code refs/}.
+     */
+    private boolean hasFileRefs() {
+        if (Files.exists(gitDir.resolve("reftable"))) {
+            return false;
+        }
+        Map<String, List<String>> values = config();
+        List<String> storage = values == null ? null : values.get("extensions.refstorage");
+        return storage == null || storage.isEmpty() || storage.get(storage.size() - 1).equalsIgnoreCase("files");
+    }
+
+    private Map<String, List<String>> config() {
+        try {
+            Path file = gitDir.resolve("config");
+            Map<Path, FileStamp> stamps = Map.of(file, FileStamp.of(Files.readAttributes(file, BasicFileAttributes.class)));
+            if (config == null || !config.isValidFor(stamps)) {
+                config = new Cached<>(stamps, parseConfig(Files.readString(file, StandardCharsets.UTF_8)));
+            }
+            return config.value;
+        } catch (IOException e) {
+            config = null;
+            return null;
+        }
+    }
+
+    private Map<Path, FileStamp> refStamps() throws IOException {
+        Map<Path, FileStamp> stamps = new HashMap<>();
+        Path packedRefs = gitDir.resolve("packed-refs");
+        if (Files.exists(packedRefs)) {
+            stamps.put(packedRefs, FileStamp.of(Files.readAttributes(packedRefs, BasicFileAttributes.class)));
+        }
+        Files.walkFileTree(gitDir.resolve("refs"), new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                stamps.put(dir, FileStamp.of(attrs));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                stamps.put(file, FileStamp.of(attrs));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return stamps;
+    }
+
+    private Map<String, String> readRefs() throws IOException {
+        Map<String, String> targets = new HashMap<>();
+        Path packedRefs = gitDir.resolve("packed-refs");
+        if (Files.exists(packedRefs)) {
+            for (String line : Files.readAllLines(packedRefs, StandardCharsets.UTF_8)) {
+                int space = line.indexOf(' ');
+                if (!line.startsWith("#") && !line.startsWith("^") && space > 0) {
+                    targets.put(line.substring(space + 1).trim(), line.substring(0, space));
+                }
+            }
+        }
+
+        Path refsDir = gitDir.resolve("refs");
+        try (var files = Files.walk(refsDir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = "refs/" + refsDir.relativize(file).toString().replace(File.separatorChar, '/');
+                if (!name.endsWith(".lock")) {
+                    targets.put(name, Files.readString(file, StandardCharsets.UTF_8).trim());
+                }
+            }
+        }
+
+        Map<String, String> refs = new HashMap<>();
+        for (String name : targets.keySet()) {
+            String target = targets.get(name);
+            for (int depth = 0; target != null && target.startsWith("ref: ") && depth < 5; depth++) {
+                target = targets.get(target.substring("ref: ".length()).trim());
+            }
+            if (target != null && OBJECT_ID.matcher(target).matches()) {
+                refs.put(name, target);
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * Parses git config syntax into {@code section[.subsection].key} names, section and key lowercased, with all values
+     * given for each in order. Returns {@code null} for configs using includes, whose values cannot be known from this
+     * file alone.
+     */
+    static Map<String, List<String>> parseConfig(String text) {
+        Map<String, List<String>> values = new HashMap<>();
+        String section = null;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '#' || c == ';') {
+                i = endOfLine(text, i);
+            } else if (c == '[') {
+                int end = text.indexOf(']', i);
+                if (end < 0) {
+                    return null;
+                }
+                section = sectionName(text.substring(i + 1, end));
+                if (section == null || section.equals("include") || section.startsWith("includeif.")) {
+                    return null;
+                }
+                i = end + 1;
+            } else {
+                int keyEnd = i;
+                while (keyEnd < text.length() && (Character.isLetterOrDigit(text.charAt(keyEnd)) || text.charAt(keyEnd) == '-')) {
+                    keyEnd++;
+                }
+                if (section == null || keyEnd == i) {
+                    return null;
+                }
+                String key = section + "." + text.substring(i, keyEnd).toLowerCase(Locale.ROOT);
+                i = keyEnd;
+                while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+                    i++;
+                }
+                StringBuilder value = new StringBuilder();
+                if (i < text.length() && text.charAt(i) == '=') {
+                    i = parseValue(text, i + 1, value);
+                    if (i < 0) {
+                        return null;
+                    }
+                } else {
+                    value.append("true");
+                }
+                values.computeIfAbsent(key, k -> new ArrayList<>()).add(value.toString());
+            }
+        }
+        return values;
+    }
+
+    private static String sectionName(String header) {
+        int quote = header.indexOf('"');
+        if (quote < 0) {
+            // deprecated [section.subsection] syntax, which is case-insensitive throughout
+            return header.trim().toLowerCase(Locale.ROOT);
+        }
+        if (!header.endsWith("\"")) {
+            return null;
+        }
+        String subsection = header.substring(quote + 1, header.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+        return header.substring(0, quote).trim().toLowerCase(Locale.ROOT) + "." + subsection;
+    }
+
+    /**
+     * Parses a value starting at {@code i} up to the end of its line, following quoting, escapes, comments and line
+     * continuations as git does. Returns the index after the value, or -1 if the value is malformed.
+     */
+    private static int parseValue(String text, int i, StringBuilder value) {
+        boolean quoted = false;
+        int trailingSpace = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c == '\n') {
+                break;
+            } else if (c == '\r' && (i == text.length() || text.charAt(i) == '\n')) {
+                continue;
+            } else if (!quoted && (c == '#' || c == ';')) {
+                i = endOfLine(text, i);
+                break;
+            } else if (c == '"') {
+                quoted = !quoted;
+                trailingSpace = 0;
+            } else if (c == '\\') {
+                if (i == text.length()) {
+                    return -1;
+                }
+                char escaped = text.charAt(i++);
+                switch (escaped) {
+                    case '\n' -> { }
+                    case '\r' -> i += i < text.length() && text.charAt(i) == '\n' ? 1 : 0;
+                    case 'n' -> value.append('\n');
+                    case 't' -> value.append('\t');
+                    case 'b' -> value.append('\b');
+                    case '"', '\\' -> value.append(escaped);
+                    default -> {
+                        return -1;
+                    }
+                }
+                trailingSpace = 0;
+            } else if (!quoted && (c == ' ' || c == '\t')) {
+                if (value.length() > 0) {
+                    value.append(c);
+                    trailingSpace++;
+                }
+            } else {
+                value.append(c);
+                trailingSpace = 0;
+            }
+        }
+        if (quoted) {
+            return -1;
+        }
+        value.setLength(value.length() - trailingSpace);
+        return i;
+    }
+
+    private static int endOfLine(String text, int i) {
+        int end = text.indexOf('\n', i);
+        return end < 0 ? text.length() : end + 1;
+    }
+
+    private record FileStamp(Instant modified, long size) {
+        static FileStamp of(BasicFileAttributes attrs) {
+            return new FileStamp(attrs.lastModifiedTime().toInstant(), attrs.isDirectory() ? 0 : attrs.size());
+        }
+    }
+
+    private static class Cached<T> {
+        private final Map<Path, FileStamp> stamps;
+        private final Instant readAt = Instant.now();
+        private final T value;
+
+        Cached(Map<Path, FileStamp> stamps, T value) {
+            this.stamps = stamps;
+            this.value = value;
+        }
+
+        boolean isValidFor(Map<Path, FileStamp> current) {
+            Instant racyAfter = readAt.minus(RACY_WINDOW);
+            return stamps.equals(current) && stamps.values().stream().allMatch(stamp -> stamp.modified().isBefore(racyAfter));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Which repository a URL points to, regardless of the credentials embedded in it, the letter case of its scheme and
+ * host, a default port, or a trailing {@code /} or {@code .git}, so that rotating a password or respelling a material's
+ * URL neither counts as a different repository nor invalidates anything cached for it.
+ */
+public final class RepositoryIdentity {
+    private static final Pattern SCP_LIKE_URL = Pattern.compile("^(?:[^@/]+@)?([^:/]+):(.*)$");
+    private static final Map<String, String> DEFAULT_PORTS = Map.of("http", ":80", "https", ":443", "ssh", ":22", "git", ":9418");
+
+    private final String normalizedUrl;
+
+    private RepositoryIdentity(String normalizedUrl) {
+        this.normalizedUrl = normalizedUrl;
+    }
+
+    public static RepositoryIdentity of(String url) {
+        return new RepositoryIdentity(normalize(url));
+    }
+
+    public static RepositoryIdentity of(GitConfig gitConfig) {
+        return of(gitConfig.getUrl());
+    }
+
+    private static String normalize(String url) {
+        String normalized = url.trim();
+        int schemeEnd = normalized.indexOf("://");
+        if (schemeEnd > 0) {
+            String scheme = normalized.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+            String rest = normalized.substring(schemeEnd + 3);
+            // credentials are embedded as is, so a password may contain anything but the host cannot contain an '@'
+            rest = rest.substring(rest.lastIndexOf('@') + 1);
+            int pathStart = rest.indexOf('/') < 0 ? rest.length() : rest.indexOf('/');
+            String host = rest.substring(0, pathStart).toLowerCase(Locale.ROOT);
+            String defaultPort = DEFAULT_PORTS.get(scheme);
+            if (defaultPort != null && host.endsWith(defaultPort)) {
+                host = host.substring(0, host.length() - defaultPort.length());
+            }
+            normalized = scheme + "://" + host + rest.substring(pathStart);
+        } else {
+            Matcher scpLike = SCP_LIKE_URL.matcher(normalized);
+            if (scpLike.matches()) {
+                normalized = scpLike.group(1).toLowerCase(Locale.ROOT) + ":" + scpLike.group(2);
+            }
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized.endsWith(".git") ? normalized.substring(0, normalized.length() - ".git".length()) : normalized;
+    }
+
+    /**
+     * @return the host (without port) the repository is reached at, or {@code null} for a local repository.
+     */
+    public String host() {
+        int schemeEnd = normalizedUrl.indexOf("://");
+        String authority;
+        if (schemeEnd > 0) {
+            String rest = normalizedUrl.substring(schemeEnd + 3);
+            authority = rest.indexOf('/') < 0 ? rest : rest.substring(0, rest.indexOf('/'));
+        } else {
+            Matcher scpLike = SCP_LIKE_URL.matcher(normalizedUrl);
+            authority = scpLike.matches() ? scpLike.group(1) : "";
+        }
+        int port = authority.lastIndexOf(':');
+        String host = port > authority.lastIndexOf(']') ? authority.substring(0, port) : authority;
+        return host.isEmpty() ? null : host;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return normalizedUrl.equals(((RepositoryIdentity) o).normalizedUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return normalizedUrl.hashCode();
+    }
+
+    /**
+     * @return the normalized URL, which never contains credentials.
+     */
+    @Override
+    public String toString() {
+        return normalizedUrl;
+    }
+}
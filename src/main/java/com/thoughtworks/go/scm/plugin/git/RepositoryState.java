@@ -0,0 +1,53 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import java.io.File;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * What the steps of one operation on a working copy (e.g. fetching and resetting it) need to know about it, looked up
+ * once and shared between the steps, instead of each step querying git again. Steps which change the working copy say
+ * so, and only what they changed is looked up again.
+ */
+class RepositoryState {
+    private final File workingDir;
+    private final Supplier<Map<String, String>> submoduleUrlReader;
+    private Boolean submoduleEnabled;
+    private Map<String, String> submoduleUrls;
+
+    RepositoryState(File workingDir, Supplier<Map<String, String>> submoduleUrlReader) {
+        this.workingDir = workingDir;
+        this.submoduleUrlReader = submoduleUrlReader;
+    }
+
+    boolean isSubmoduleEnabled() {
+        if (submoduleEnabled == null) {
+            submoduleEnabled = new File(workingDir, ".gitmodules").exists();
+        }
+        return submoduleEnabled;
+    }
+
+    /**
+     * @return the URL of every submodule configured in the repository's config, by submodule name.
+     */
+    Map<String, String> submoduleUrls() {
+        if (submoduleUrls == null) {
+            submoduleUrls = submoduleUrlReader.get();
+        }
+        return submoduleUrls;
+    }
+
+    /**
+     * To be called once the checked out files may have changed, e.g. by a reset.
+     */
+    void workingTreeChanged() {
+        submoduleEnabled = null;
+    }
+
+    /**
+     * To be called once the submodules configured in the repository's config may have changed.
+     */
+    void submoduleConfigChanged() {
+        submoduleUrls = null;
+    }
+}
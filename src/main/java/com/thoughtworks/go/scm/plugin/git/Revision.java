@@ -1,39 +1,58 @@
 package com.thoughtworks.go.scm.plugin.git;
 
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.regex.Pattern;
 
 public class Revision {
+    private static final Pattern SHA_PATTERN = Pattern.compile("^([0-9a-f]{40}|[0-9a-f]{64})$");
+
+    private byte[] sha;
     private String revision;
     private Instant timestamp;
     private String comment;
     private String user;
     private String emailId;
-    private List<ModifiedFile> modifiedFiles;
+    private PathDictionary pathDictionary;
+    private ModifiedFiles modifiedFiles;
     private boolean isMergeCommit;
+    private int omittedCommentLength;
+    private int omittedModifiedFiles;
+    private String rewrittenRevision;
+    private String branch;
+    private String tag;
 
     public Revision(String revision) {
-        this.revision = revision;
+        setRevision(revision);
         this.isMergeCommit = false;
     }
 
     public Revision(String revision, Instant timestamp, String comment, String user, String emailId, List<ModifiedFile> modifiedFiles) {
-        this.revision = revision;
+        setRevision(revision);
         this.timestamp = timestamp;
         this.comment = comment;
         this.user = user;
         this.emailId = emailId;
-        this.modifiedFiles = modifiedFiles;
+        setModifiedFiles(modifiedFiles);
         this.isMergeCommit = false;
     }
 
     public String getRevision() {
-        return revision;
+        return sha == null ? revision : HexFormat.of().formatHex(sha);
     }
 
+    /**
+     * Full hex SHAs, by far the common case, are held as their raw bytes rather than as a 40 character string.
+     */
     public void setRevision(String revision) {
-        this.revision = revision;
+        if (revision != null && SHA_PATTERN.matcher(revision).matches()) {
+            this.sha = HexFormat.of().parseHex(revision);
+            this.revision = null;
+        } else {
+            this.sha = null;
+            this.revision = revision;
+        }
     }
 
     public Instant getTimestamp() {
@@ -68,23 +87,54 @@ public class Revision {
         this.emailId = emailId;
     }
 
+    /**
+     * @return the files modified, held compactly; the list can still be changed, but its elements are copies, so
+     * changes must go through the list rather than through the files read from it.
+     */
     public List<ModifiedFile> getModifiedFiles() {
         return modifiedFiles;
     }
 
+    /**
+     * Copies the given files into this revision's compact list; later changes to the given list are not reflected.
+     */
     public void setModifiedFiles(List<ModifiedFile> modifiedFiles) {
-        this.modifiedFiles = modifiedFiles;
+        if (modifiedFiles == null) {
+            this.modifiedFiles = null;
+            return;
+        }
+        this.modifiedFiles = new ModifiedFiles(pathDictionary());
+        this.modifiedFiles.addAll(modifiedFiles);
+    }
+
+    /**
+     * Shares the given dictionary for the directories of this revision's modified files, typically with the other
+     * revisions parsed from the same git output.
+     */
+    void usePathDictionary(PathDictionary pathDictionary) {
+        this.pathDictionary = pathDictionary;
     }
 
     public final ModifiedFile createModifiedFile(String filename, String action) {
-        ModifiedFile file = new ModifiedFile(filename, action);
+        return createModifiedFile(filename, ModifiedFile.Action.fromName(action));
+    }
+
+    public final ModifiedFile createModifiedFile(String filename, ModifiedFile.Action action) {
         if (modifiedFiles == null) {
-            modifiedFiles = new ArrayList<>();
+            modifiedFiles = new ModifiedFiles(pathDictionary());
         }
+        ModifiedFile file = new ModifiedFile(filename, action);
         modifiedFiles.add(file);
         return file;
     }
 
+    private PathDictionary pathDictionary() {
+        if (pathDictionary == null) {
+            pathDictionary = new PathDictionary();
+        }
+        return pathDictionary;
+    }
+
     public boolean isMergeCommit() {
         return isMergeCommit;
     }
@@ -92,4 +142,64 @@ public class Revision {
     public void setMergeCommit(boolean mergeCommit) {
         isMergeCommit = mergeCommit;
     }
+
+    /**
+     * @return the number of characters cut from the end of the comment by the comment length limit
+     */
+    public int getOmittedCommentLength() {
+        return omittedCommentLength;
+    }
+
+    public void setOmittedCommentLength(int omittedCommentLength) {
+        this.omittedCommentLength = omittedCommentLength;
+    }
+
+    /**
+     * @return the number of modified files left out of {@link #getModifiedFiles()} by the modified file limit
+     */
+    public int getOmittedModifiedFiles() {
+        return omittedModifiedFiles;
+    }
+
+    public void setOmittedModifiedFiles(int omittedModifiedFiles) {
+        this.omittedModifiedFiles = omittedModifiedFiles;
+    }
+
+    /**
+     * @return the previously seen revision which the branch no longer contains, if this revision is reported in place
+     * of the revisions since it because history was rewritten; otherwise {@code null}.
+     */
+    public String getRewrittenRevision() {
+        return rewrittenRevision;
+    }
+
+    public void setRewrittenRevision(String rewrittenRevision) {
+        this.rewrittenRevision = rewrittenRevision;
+    }
+
+    /**
+     * @return the branch this revision was found on, for materials monitoring several branches; otherwise {@code null}.
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    /**
+     * @return the tag this revision was found by, for materials monitoring tags; otherwise {@code null}.
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    public boolean isTruncated() {
+        return omittedCommentLength > 0 || omittedModifiedFiles > 0;
+    }
 }
@@ -0,0 +1,193 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.thoughtworks.go.scm.plugin.util.DataDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Disk-backed, size-bounded LRU cache of "latest revision touching these paths at this tip" answers. The answer for a
+ * given tip SHA and path set never changes, so entries are never invalidated; they are only evicted, least recently
+ * used first, once the cache holds more than {@value #MAX_ENTRIES} entries or {@value #MAX_BYTES} bytes. Recency is
+ * kept in the entry files' modification times so the cache, including its eviction order, survives plugin reloads.
+ */
+public class RevisionCache {
+    public static final String MAX_ENTRIES = "git.path.material.revision.cache.max.entries";
+    public static final String MAX_BYTES = "git.path.material.revision.cache.max.bytes";
+    private static final Logger LOGGER = Logger.getLoggerFor(RevisionCache.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static RevisionCache instance;
+
+    private final File directory;
+    private final int maxEntries;
+    private final long maxBytes;
+    private LinkedHashMap<String, Long> entries;
+    private long totalBytes;
+
+    RevisionCache(File directory, int maxEntries, long maxBytes) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    public static synchronized RevisionCache instance() {
+        if (instance == null) {
+            instance = new RevisionCache(DataDirectory.resolve("revision-cache"), Integer.getInteger(MAX_ENTRIES, 10_000), Long.getLong(MAX_BYTES, 64L * 1024 * 1024));
+        }
+        return instance;
+    }
+
+    public Revision get(String tip, List<String> paths) {
+        return get(tip, paths, false);
+    }
+
+    /**
+     * @param firstParent whether the revision was looked up along first parents only, which is cached separately.
+     */
+    public synchronized Revision get(String tip, List<String> paths, boolean firstParent) {
+        if (tip == null || maxEntries <= 0) {
+            return null;
+        }
+        String key = key(tip, paths, firstParent);
+        String fileName = fileName(key);
+        if (entries().get(fileName) == null) {
+            return null;
+        }
+        File file = new File(directory, fileName);
+        try {
+            Map<?, ?> entry = objectMapper.readValue(file, Map.class);
+            if (!key.equals(entry.get("key"))) {
+                return null;
+            }
+            Files.setLastModifiedTime(file.toPath(), FileTime.from(Instant.now()));
+            return fromMap((Map<?, ?>) entry.get("revision"));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn(String.format("Discarding unreadable revision cache entry %s", file), e);
+            remove(fileName);
+            return null;
+        }
+    }
+
+    public void put(String tip, List<String> paths, Revision revision) {
+        put(tip, paths, false, revision);
+    }
+
+    public synchronized void put(String tip, List<String> paths, boolean firstParent, Revision revision) {
+        if (tip == null || revision == null || maxEntries <= 0) {
+            return;
+        }
+        String key = key(tip, paths, firstParent);
+        String fileName = fileName(key);
+        try {
+            entries();
+            Files.createDirectories(directory.toPath());
+            byte[] content = objectMapper.writeValueAsBytes(Map.of("key", key, "revision", toMap(revision)));
+            File temp = File.createTempFile(fileName, ".tmp", directory);
+            Files.write(temp.toPath(), content);
+            Files.move(temp.toPath(), new File(directory, fileName).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Long previous = entries.put(fileName, (long) content.length);
+            totalBytes += content.length - (previous == null ? 0 : previous);
+            evict();
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not write revision cache entry for %s", tip), e);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (eldest.hasNext() && (entries.size() > maxEntries || totalBytes > maxBytes)) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.getValue();
+            new File(directory, entry.getKey()).delete();
+        }
+    }
+
+    private void remove(String fileName) {
+        Long size = entries.remove(fileName);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        new File(directory, fileName).delete();
+    }
+
+    /**
+     * Lazily indexes the entries already on disk, oldest access first, so that eviction order carries over from
+     * previous plugin instances.
+     */
+    private LinkedHashMap<String, Long> entries() {
+        if (entries == null) {
+            entries = new LinkedHashMap<>(16, 0.75f, true);
+            totalBytes = 0;
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+            if (files != null) {
+                Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+                for (File file : files) {
+                    entries.put(file.getName(), file.length());
+                    totalBytes += file.length();
+                }
+            }
+        }
+        return entries;
+    }
+
+    static String key(String tip, List<String> paths, boolean firstParent) {
+        // first-parent entries are told apart by their key alone, so that existing entries stay valid
+        return tip + (firstParent ? " first-parent" : "") + "\n" + String.join("\n", BatchRevisionEvaluator.normalize(paths));
+    }
+
+    private static String fileName(String key) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8))) + ".json";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Map<String, Object> toMap(Revision revision) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("revision", revision.getRevision());
+        map.put("timestamp", revision.getTimestamp() == null ? null : revision.getTimestamp().toString());
+        map.put("comment", revision.getComment());
+        map.put("user", revision.getUser());
+        map.put("emailId", revision.getEmailId());
+        map.put("mergeCommit", revision.isMergeCommit());
+        map.put("omittedCommentLength", revision.getOmittedCommentLength());
+        map.put("omittedModifiedFiles", revision.getOmittedModifiedFiles());
+        List<Map<String, String>> modifiedFiles = new ArrayList<>();
+        for (ModifiedFile file : Optional.ofNullable(revision.getModifiedFiles()).orElse(List.of())) {
+            modifiedFiles.add(Map.of("fileName", file.getFileName(), "action", file.getAction()));
+        }
+        map.put("modifiedFiles", modifiedFiles);
+        return map;
+    }
+
+    static Revision fromMap(Map<?, ?> map) {
+        String timestamp = (String) map.get("timestamp");
+        Revision revision = new Revision((String) map.get("revision"),
+                timestamp == null ? null : Instant.parse(timestamp),
+                (String) map.get("comment"),
+                (String) map.get("user"),
+                (String) map.get("emailId"),
+                null);
+        revision.setMergeCommit(Boolean.TRUE.equals(map.get("mergeCommit")));
+        revision.setOmittedCommentLength(map.get("omittedCommentLength") instanceof Number omitted ? omitted.intValue() : 0);
+        revision.setOmittedModifiedFiles(map.get("omittedModifiedFiles") instanceof Number omitted ? omitted.intValue() : 0);
+        for (Object file : (List<?>) map.get("modifiedFiles")) {
+            Map<?, ?> modifiedFile = (Map<?, ?>) file;
+            revision.createModifiedFile((String) modifiedFile.get("fileName"), (String) modifiedFile.get("action"));
+        }
+        return revision;
+    }
+}
@@ -0,0 +1,321 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.thoughtworks.go.scm.plugin.util.DataDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only store of parsed revisions, including their modified files, for one clone of a repository, so that
+ * commits which were already parsed (e.g. by an earlier poll, or before a server restart) are not diffed again. A
+ * revision never changes for a given SHA, so records are only ever appended; they are read through a memory mapping of
+ * the file, at offsets indexed by SHA when the store is opened. Each clone has a store of its own, so that compacting
+ * it to what the clone contains does not drop revisions other clones of the repository, fetched at other times, still
+ * need.
+ * <p>
+ * The file starts with a header recording the limits revisions were parsed with ({@link GitHelper#MAX_MODIFIED_FILES}
+ * and {@link GitModificationParser#MAX_COMMENT_LENGTH}); a store written with other limits is started afresh. A
+ * record which was cut short, e.g. by a crash, is dropped along with anything after it. Once a day at most, after the
+ * repository has been garbage collected, the store is compacted to the revisions the repository still contains; the
+ * time of the last compaction is kept as the modification time of a marker file next to the store, so that it
+ * survives restarts. Stores stop growing at {@value #MAX_BYTES} bytes (default 256 MiB), after which they are
+ * compacted once an hour at most; 0 disables them.
+ */
+public class RevisionStore {
+    public static final String MAX_BYTES = "git.path.material.revision.store.max.bytes";
+    private static final int VERSION = 1;
+    private static final Duration COMPACTION_INTERVAL = Duration.ofDays(1);
+    private static final Duration FULL_COMPACTION_INTERVAL = Duration.ofHours(1);
+    private static final Logger LOGGER = Logger.getLoggerFor(RevisionStore.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Map<File, RevisionStore> STORES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final File compactionMarker;
+    private final long maxBytes;
+    private Map<String, Object> header;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private Map<String, Long> index;
+    private long size;
+    private boolean full;
+
+    RevisionStore(File file, long maxBytes, Map<String, Object> header) {
+        this.file = file;
+        this.compactionMarker = new File(file.getParentFile(), file.getName() + ".compacted");
+        // records are addressed by int offsets into the mapping
+        this.maxBytes = Math.min(maxBytes, Integer.MAX_VALUE);
+        this.header = header;
+    }
+
+    /**
+     * @param repository the git directory of the clone.
+     * @return the store of the clone in {@code repository}, or {@code null} if stores are disabled.
+     */
+    public static RevisionStore forClone(File repository, boolean firstParent) {
+        long maxBytes = Long.getLong(MAX_BYTES, 256L * 1024 * 1024);
+        if (maxBytes <= 0) {
+            return null;
+        }
+        // merge commits list other modified files when only first parents are followed
+        String key = repository.toPath().toAbsolutePath().normalize() + (firstParent ? "#first-parent" : "");
+        File file = new File(DataDirectory.resolve("revision-store"), fileName(key));
+        RevisionStore store = STORES.computeIfAbsent(file, f -> new RevisionStore(f, maxBytes, currentHeader()));
+        store.useHeader(currentHeader());
+        return store;
+    }
+
+    private static Map<String, Object> currentHeader() {
+        return Map.of(
+                "version", VERSION,
+                "maxModifiedFiles", Integer.getInteger(GitHelper.MAX_MODIFIED_FILES, 10_000),
+                "maxCommentLength", Integer.getInteger(GitModificationParser.MAX_COMMENT_LENGTH, 64 * 1024));
+    }
+
+    /**
+     * @return the stored revision, or {@code null} if {@code sha} has not been stored.
+     */
+    public synchronized Revision get(String sha) {
+        try {
+            Long offset = index().get(sha);
+            if (offset == null) {
+                return null;
+            }
+            return RevisionCache.fromMap(objectMapper.readValue(content(record(offset)), Map.class));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn(String.format("Discarding unreadable revision store %s", file), e);
+            reset();
+            return null;
+        }
+    }
+
+    public synchronized void put(Revision revision) {
+        String sha = revision.getRevision();
+        try {
+            if (index().containsKey(sha)) {
+                return;
+            }
+            byte[] content = objectMapper.writeValueAsBytes(RevisionCache.toMap(revision));
+            if (size + 6 + sha.length() + content.length > maxBytes) {
+                full = true;
+                return;
+            }
+            index.put(sha, size);
+            size += append(channel, sha, content);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not add revision %s to revision store %s", sha, file), e);
+            reset();
+        }
+    }
+
+    /**
+     * @return the SHAs of all stored revisions.
+     */
+    public synchronized Set<String> revisions() {
+        try {
+            return new HashSet<>(index().keySet());
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Discarding unreadable revision store %s", file), e);
+            reset();
+            return Set.of();
+        }
+    }
+
+    public synchronized boolean isCompactionDue() {
+        return lastCompaction().plus(full ? FULL_COMPACTION_INTERVAL : COMPACTION_INTERVAL).isBefore(Instant.now());
+    }
+
+    /**
+     * @return when the store was last compacted; a store never compacted counts as compacted when first asked.
+     */
+    private Instant lastCompaction() {
+        if (compactionMarker.isFile()) {
+            return Instant.ofEpochMilli(compactionMarker.lastModified());
+        }
+        markCompacted();
+        return Instant.now();
+    }
+
+    private void markCompacted() {
+        try {
+            Files.createDirectories(compactionMarker.getParentFile().toPath());
+            if (!compactionMarker.createNewFile()) {
+                Files.setLastModifiedTime(compactionMarker.toPath(), FileTime.from(Instant.now()));
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not record compaction of revision store %s", file), e);
+        }
+    }
+
+    /**
+     * Rewrites the store with only the revisions in {@code retained}, e.g. those still reachable in the repository.
+     */
+    public synchronized void compact(Set<String> retained) {
+        markCompacted();
+        full = false;
+        try {
+            Map<String, Long> current = index();
+            if (retained.containsAll(current.keySet())) {
+                return;
+            }
+            File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try (FileChannel compacted = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                append(compacted, "", objectMapper.writeValueAsBytes(header));
+                for (Map.Entry<String, Long> entry : current.entrySet()) {
+                    if (retained.contains(entry.getKey())) {
+                        write(compacted, record(entry.getValue()));
+                    }
+                }
+            }
+            close();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info(String.format("Compacted revision store %s from %d to %d revisions", file, current.size(), index().size()));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not compact revision store %s", file), e);
+            close();
+        }
+    }
+
+    private synchronized void useHeader(Map<String, Object> header) {
+        if (!this.header.equals(header)) {
+            this.header = header;
+            reset();
+        }
+    }
+
+    /**
+     * Lazily opens the file, creating it, or starting it afresh when its header does not match, and indexes the offset
+     * of every complete record by SHA.
+     */
+    private Map<String, Long> index() throws IOException {
+        if (index != null) {
+            return index;
+        }
+        Files.createDirectories(file.getParentFile().toPath());
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        size = channel.size();
+        index = new HashMap<>();
+        mapped = null;
+        long offset = size < 4 ? 0 : scanHeader();
+        if (offset == 0) {
+            channel.truncate(0);
+            size = append(channel, "", objectMapper.writeValueAsBytes(header));
+            return index;
+        }
+        ByteBuffer buffer = map();
+        while (offset + 6 <= size) {
+            int length = buffer.getInt((int) offset);
+            if (length < 2 || offset + 4 + length > size) {
+                break;
+            }
+            byte[] sha = new byte[Short.toUnsignedInt(buffer.getShort((int) offset + 4))];
+            buffer.get((int) offset + 6, sha);
+            index.put(new String(sha, StandardCharsets.US_ASCII), offset);
+            offset += 4 + length;
+        }
+        if (offset < size) {
+            LOGGER.warn(String.format("Dropping %d bytes of incomplete records from revision store %s", size - offset, file));
+            channel.truncate(offset);
+            size = offset;
+            mapped = null;
+        }
+        return index;
+    }
+
+    /**
+     * @return the offset of the first record after the header, or 0 if the header is unreadable or does not match.
+     */
+    private long scanHeader() {
+        try {
+            ByteBuffer record = record(0);
+            return header.equals(objectMapper.readValue(content(record), Map.class)) ? record.limit() : 0;
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private ByteBuffer record(long offset) throws IOException {
+        ByteBuffer buffer = map();
+        int length = buffer.getInt((int) offset);
+        if (length < 2 || offset + 4 + length > size) {
+            throw new IOException(String.format("Invalid record at offset %d", offset));
+        }
+        return buffer.duplicate().position((int) offset).limit((int) offset + 4 + length);
+    }
+
+    private static byte[] content(ByteBuffer record) {
+        int shaLength = Short.toUnsignedInt(record.getShort(record.position() + 4));
+        byte[] content = new byte[record.limit() - record.position() - 6 - shaLength];
+        record.get(record.position() + 6 + shaLength, content);
+        return content;
+    }
+
+    private ByteBuffer map() throws IOException {
+        if (mapped == null || mapped.capacity() < size) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return mapped;
+    }
+
+    /**
+     * Appends a record of its length, the length of {@code sha}, {@code sha} and {@code content}.
+     *
+     * @return the number of bytes appended.
+     */
+    private static int append(FileChannel channel, String sha, byte[] content) throws IOException {
+        byte[] shaBytes = sha.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer record = ByteBuffer.allocate(6 + shaBytes.length + content.length);
+        record.putInt(2 + shaBytes.length + content.length).putShort((short) shaBytes.length).put(shaBytes).put(content).flip();
+        return write(channel, record);
+    }
+
+    private static int write(FileChannel channel, ByteBuffer record) throws IOException {
+        int written = 0;
+        long position = channel.size();
+        while (record.hasRemaining()) {
+            written += channel.write(record, position + written);
+        }
+        return written;
+    }
+
+    private void reset() {
+        close();
+        file.delete();
+    }
+
+    private void close() {
+        index = null;
+        mapped = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8))) + ".revisions";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
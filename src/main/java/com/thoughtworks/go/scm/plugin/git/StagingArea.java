@@ -0,0 +1,208 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.thoughtworks.go.scm.plugin.git.cmd.ProcessScheduler;
+import com.thoughtworks.go.scm.plugin.util.DataDirectory;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plugin-managed area holding bare repositories which are not (yet) any material's flyweight, one per repository URL.
+ * When a material is validated or its connection checked, its repository can be cloned here in the background
+ * ({@link #prewarm(GitConfig)}), so that the material's first poll only has to move the clone into its flyweight
+ * folder ({@link #adopt(GitConfig, File)}) and fetch, instead of cloning synchronously and risking a timeout. A fresh
+ * flyweight which turns out not to be needed is likewise parked here ({@link #park(GitConfig, File)}) rather than
+ * deleted, so that later polls of the same repository fetch into it instead of cloning again.
+ * The same goes for a first clone which fails part way, so the next attempt resumes from the objects already received.
+ * <p>
+ * Prewarming is off by default and is enabled by setting the {@value #PREWARM_TOGGLE} system property to {@code Y}.
+ * A poll waits at most {@value #ADOPT_WAIT} seconds (default 10) for a prewarming clone still in progress, and
+ * otherwise clones by itself. Staged clones nobody adopts are deleted once they are older than {@value #MAX_AGE} hours
+ * (default a week).
+ */
+public class StagingArea {
+    public static final String PREWARM_TOGGLE = "toggle.git.flyweight.prewarm";
+    public static final String MAX_AGE = "git.path.material.staging.max.age.hours";
+    public static final String ADOPT_WAIT = "git.path.material.staging.adopt.wait.seconds";
+    private static final Duration COLLECTION_INTERVAL = Duration.ofHours(1);
+    private static final Logger LOGGER = Logger.getLoggerFor(StagingArea.class);
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService PREWARMERS = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "git-path-material-prewarm-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static StagingArea instance;
+
+    private final File directory;
+    private final Map<String, Future<?>> prewarming = new ConcurrentHashMap<>();
+    private Instant lastCollected = Instant.MIN;
+
+    StagingArea(File directory) {
+        this.directory = directory;
+    }
+
+    public static synchronized StagingArea instance() {
+        if (instance == null) {
+            instance = new StagingArea(DataDirectory.resolve("staging"));
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a background clone of {@code gitConfig}'s repository into the staging area, unless prewarming is disabled,
+     * the repository is already staged or being cloned, or {@code gitConfig} is not for a bare server-side flyweight.
+     */
+    public void prewarm(GitConfig gitConfig) {
+        if (!"Y".equalsIgnoreCase(System.getProperty(PREWARM_TOGGLE)) || !gitConfig.isBare()) {
+            return;
+        }
+        collectGarbageIfDue();
+        String key = key(gitConfig);
+        if (new File(directory, key).exists()) {
+            return;
+        }
+        prewarming.computeIfAbsent(key, k -> PREWARMERS.submit(() -> {
+            try {
+                clone(gitConfig, key);
+            } finally {
+                prewarming.remove(key);
+            }
+        }));
+    }
+
+    private void clone(GitConfig gitConfig, String key) {
+        File staged = new File(directory, key);
+        File partial = new File(directory, key + ".prewarming");
+        try {
+            FileUtils.deleteQuietly(partial);
+            FileUtils.forceMkdir(partial);
+            GitHelper git = new GitHelper(gitConfig, partial).withPriority(ProcessScheduler.Priority.MAINTENANCE);
+            git.cloneRepository();
+            git.fetch(null);
+            Files.move(partial.toPath(), staged.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            Files.setLastModifiedTime(staged.toPath(), FileTime.from(Instant.now()));
+            LOGGER.info(String.format("Prewarmed %s for %s", staged, gitConfig.getUrl()));
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Could not prewarm a clone of %s", gitConfig.getUrl()), e);
+            FileUtils.deleteQuietly(partial);
+        }
+    }
+
+    /**
+     * Moves {@code repository} into the staging area in place of any clone of the same repository staged before, to be
+     * adopted by the next poll instead of cloning again; deletes it if it is not a repository or cannot be moved.
+     */
+    public synchronized void park(GitConfig gitConfig, File repository) {
+        collectGarbageIfDue();
+        File staged = new File(directory, key(gitConfig));
+        if (!new File(repository, "HEAD").isFile()) {
+            FileUtils.deleteQuietly(repository);
+            return;
+        }
+        try {
+            FileUtils.deleteQuietly(staged);
+            FileUtils.forceMkdir(directory);
+            Files.move(repository.toPath(), staged.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            Files.setLastModifiedTime(staged.toPath(), FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not move %s to the staging area, deleting it", repository), e);
+            FileUtils.deleteQuietly(repository);
+        }
+    }
+
+    /**
+     * Moves the staged clone of {@code gitConfig}'s repository, if there is one, to {@code target}, replacing whatever
+     * is there. Waits up to {@value #ADOPT_WAIT} seconds for a prewarming clone of the repository which is still in
+     * progress, so as not to hold up the poll for the whole clone.
+     *
+     * @return {@code true} if a staged clone was moved to {@code target}.
+     */
+    public boolean adopt(GitConfig gitConfig, File target) {
+        String key = key(gitConfig);
+        awaitPrewarming(key);
+        synchronized (this) {
+            File staged = new File(directory, key);
+            if (!new File(staged, "HEAD").isFile()) {
+                return false;
+            }
+            try {
+                FileUtils.deleteQuietly(target);
+                FileUtils.forceMkdirParent(target);
+                Files.move(staged.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not move staged clone %s to %s, cloning afresh", staged, target), e);
+                return false;
+            }
+        }
+    }
+
+    private synchronized void collectGarbageIfDue() {
+        if (lastCollected.plus(COLLECTION_INTERVAL).isBefore(Instant.now())) {
+            collectGarbage();
+        }
+    }
+
+    /**
+     * Deletes staged clones, and leftovers of interrupted prewarming clones, older than {@value #MAX_AGE} hours.
+     */
+    public synchronized void collectGarbage() {
+        lastCollected = Instant.now();
+        long maxAgeMillis = Duration.ofHours(Long.getLong(MAX_AGE, 7 * 24)).toMillis();
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (File entry : entries) {
+            boolean inProgress = prewarming.containsKey(entry.getName().replace(".prewarming", ""));
+            if (!inProgress && System.currentTimeMillis() - entry.lastModified() > maxAgeMillis) {
+                LOGGER.info(String.format("Deleting abandoned staged clone %s", entry));
+                FileUtils.deleteQuietly(entry);
+            }
+        }
+    }
+
+    private void awaitPrewarming(String key) {
+        Future<?> inProgress = prewarming.get(key);
+        if (inProgress == null) {
+            return;
+        }
+        try {
+            inProgress.get(Long.getLong(ADOPT_WAIT, 10), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.info(String.format("Prewarming clone %s is still in progress, not waiting for it", key));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException ignore) {
+            // failures are logged by the prewarming clone itself
+        }
+    }
+
+    /**
+     * Staged clones are shared by every material of a repository, whatever its branch or credentials, which are
+     * re-applied on adoption.
+     */
+    static String key(GitConfig gitConfig) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(RepositoryIdentity.of(gitConfig).toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
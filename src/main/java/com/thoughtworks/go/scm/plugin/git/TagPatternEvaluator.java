@@ -0,0 +1,209 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.thoughtworks.go.scm.plugin.util.DataDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the newest tag matching a material's {@link GitConfig#getTagPattern() tag pattern} whose commit changed the
+ * material's paths relative to the matching tag before it, tags being ordered by the time of their commits (then by
+ * name). The outcome for every tag is kept in an index, on disk so that it survives restarts, together with the commit
+ * it was compared with; a poll only peels and compares tags which are new or were moved, and those whose predecessor
+ * changed because of them.
+ * <p>
+ * Patterns are comma separated globs, as for {@link BranchPatternEvaluator}.
+ */
+public class TagPatternEvaluator {
+    private static final Logger LOGGER = Logger.getLoggerFor(TagPatternEvaluator.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Map<String, TagPatternEvaluator> MATERIALS = new ConcurrentHashMap<>();
+
+    private final File indexFile;
+    private final Pattern pattern;
+    private Map<String, Tag> tags;
+
+    TagPatternEvaluator(File indexFile, String pattern) {
+        this.indexFile = indexFile;
+        this.pattern = BranchPatternEvaluator.compile(pattern);
+    }
+
+    public static TagPatternEvaluator forMaterial(GitConfig gitConfig, List<String> paths) {
+        String key = RepositoryIdentity.of(gitConfig) + "#" + gitConfig.getTagPattern() + "\n" + String.join("\n", BatchRevisionEvaluator.normalize(paths));
+        return MATERIALS.computeIfAbsent(key, k -> new TagPatternEvaluator(new File(DataDirectory.resolve("tag-index"), fileName(k)), gitConfig.getTagPattern()));
+    }
+
+    /**
+     * @return the newest matching tag which changed {@code paths}, {@link Revision#getTag() labelled} with the tag, or
+     * {@code null} if there is none.
+     */
+    public synchronized Revision latestRevision(GitHelper git, List<String> paths) {
+        List<Map.Entry<String, Tag>> changed = changedTags(git, paths);
+        return changed.isEmpty() ? null : revision(git, changed.get(changed.size() - 1));
+    }
+
+    /**
+     * @return the matching tags which changed {@code paths} after the tag of {@code previousRevision}, newest first; if
+     * no matching tag points to {@code previousRevision}, only the newest one, unless it does.
+     */
+    public synchronized List<Revision> revisionsSince(GitHelper git, List<String> paths, String previousRevision) {
+        List<Map.Entry<String, Tag>> changed = changedTags(git, paths);
+        List<Map.Entry<String, Tag>> ordered = ordered();
+        int previous = -1;
+        for (int i = 0; i < ordered.size(); i++) {
+            if (ordered.get(i).getValue().commit().equals(previousRevision)) {
+                previous = i;
+            }
+        }
+        List<Revision> since = new ArrayList<>();
+        if (previous < 0) {
+            if (!changed.isEmpty() && !changed.get(changed.size() - 1).getValue().commit().equals(previousRevision)) {
+                since.add(revision(git, changed.get(changed.size() - 1)));
+            }
+            return since;
+        }
+        List<Map.Entry<String, Tag>> after = ordered.subList(previous + 1, ordered.size());
+        for (int i = after.size() - 1; i >= 0; i--) {
+            if (after.get(i).getValue().changed() && !after.get(i).getValue().commit().equals(previousRevision)) {
+                since.add(revision(git, after.get(i)));
+            }
+        }
+        return since;
+    }
+
+    private Revision revision(GitHelper git, Map.Entry<String, Tag> tag) {
+        Revision revision = git.getDetailsForRevision(tag.getValue().commit());
+        revision.setTag(tag.getKey());
+        return revision;
+    }
+
+    /**
+     * Brings the index up to date with the repository's tags, and returns the tags which changed the paths, oldest
+     * first.
+     */
+    private List<Map.Entry<String, Tag>> changedTags(GitHelper git, List<String> paths) {
+        Map<String, Tag> index = index();
+        Map<String, String> current = new HashMap<>();
+        git.getBranchToRevisionMap("refs/tags/").forEach((tag, object) -> {
+            if (pattern.matcher(tag).matches()) {
+                current.put(tag, object);
+            }
+        });
+        boolean updated = index.keySet().retainAll(current.keySet());
+
+        List<String> added = current.keySet().stream().filter(tag -> index.get(tag) == null || !index.get(tag).object().equals(current.get(tag))).toList();
+        if (!added.isEmpty()) {
+            Map<String, String> commits = git.commitsOf(added.stream().map(current::get).distinct().toList());
+            Map<String, Long> times = git.commitTimes(commits.values());
+            for (String tag : added) {
+                String commit = commits.get(current.get(tag));
+                if (commit == null) {
+                    // tags of trees or blobs have no history to compare
+                    index.remove(tag);
+                } else {
+                    index.put(tag, new Tag(current.get(tag), commit, times.getOrDefault(commit, 0L), null, false));
+                }
+            }
+            updated = true;
+        }
+
+        String predecessor = null;
+        for (Map.Entry<String, Tag> entry : ordered()) {
+            Tag tag = entry.getValue();
+            if (!tag.evaluated() || !Objects.equals(tag.predecessor(), predecessor)) {
+                boolean changed = predecessor == null ? git.getLatestRevisionAt(tag.commit(), paths) != null
+                        : !predecessor.equals(tag.commit()) && git.hasChanges(predecessor, tag.commit(), paths);
+                entry.setValue(tag.evaluatedAgainst(predecessor, changed));
+                updated = true;
+            }
+            predecessor = tag.commit();
+        }
+        if (updated) {
+            save();
+        }
+        return ordered().stream().filter(entry -> entry.getValue().changed()).toList();
+    }
+
+    private List<Map.Entry<String, Tag>> ordered() {
+        List<Map.Entry<String, Tag>> ordered = new ArrayList<>(tags.entrySet());
+        ordered.sort(Comparator.<Map.Entry<String, Tag>>comparingLong(entry -> entry.getValue().time()).thenComparing(Map.Entry::getKey));
+        return ordered;
+    }
+
+    private Map<String, Tag> index() {
+        if (tags == null) {
+            tags = new HashMap<>();
+            if (indexFile.isFile()) {
+                try {
+                    Map<?, ?> stored = objectMapper.readValue(indexFile, Map.class);
+                    stored.forEach((tag, value) -> tags.put((String) tag, Tag.fromMap((Map<?, ?>) value)));
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn(String.format("Discarding unreadable tag index %s", indexFile), e);
+                    tags.clear();
+                }
+            }
+        }
+        return tags;
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(indexFile.getParentFile().toPath());
+            Map<String, Object> content = new HashMap<>();
+            tags.forEach((tag, value) -> content.put(tag, value.toMap()));
+            File temp = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+            objectMapper.writeValue(temp, content);
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not write tag index %s", indexFile), e);
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8))) + ".json";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param object      the object the tag points to, an annotated tag or a commit.
+     * @param predecessor the commit of the matching tag before it, once evaluated; {@code null} if there is none.
+     * @param changed     whether the commit changed the paths relative to {@code predecessor}.
+     */
+    private record Tag(String object, String commit, long time, String predecessor, boolean changed, boolean evaluated) {
+        Tag(String object, String commit, long time, String predecessor, boolean changed) {
+            this(object, commit, time, predecessor, changed, false);
+        }
+
+        Tag evaluatedAgainst(String predecessor, boolean changed) {
+            return new Tag(object, commit, time, predecessor, changed, true);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("object", object);
+            map.put("commit", commit);
+            map.put("time", time);
+            map.put("predecessor", predecessor);
+            map.put("changed", changed);
+            return map;
+        }
+
+        static Tag fromMap(Map<?, ?> map) {
+            return new Tag((String) map.get("object"), (String) map.get("commit"), ((Number) map.get("time")).longValue(),
+                    (String) map.get("predecessor"), Boolean.TRUE.equals(map.get("changed")), true);
+        }
+    }
+}
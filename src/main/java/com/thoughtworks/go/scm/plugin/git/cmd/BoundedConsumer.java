@@ -0,0 +1,67 @@
+package com.thoughtworks.go.scm.plugin.git.cmd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the first and last lines of output only, each cut to a maximum length, for output which is kept for
+ * diagnostics rather than parsed; a verbose clone, its progress output or a large submodule tree otherwise holds on to
+ * megabytes of lines. Lines in between are counted and reported as omitted, in their place.
+ * <p>
+ * The limits default to {@value #HEAD_LINES} (100), {@value #TAIL_LINES} (400) and {@value #MAX_LINE_LENGTH} (1000
+ * characters) system properties.
+ */
+public class BoundedConsumer implements StreamConsumer {
+    public static final String HEAD_LINES = "git.path.material.output.head.lines";
+    public static final String TAIL_LINES = "git.path.material.output.tail.lines";
+    public static final String MAX_LINE_LENGTH = "git.path.material.output.max.line.length";
+
+    private final int headLines;
+    private final int tailLines;
+    private final int maxLineLength;
+    private final List<String> head = new ArrayList<>();
+    private final Deque<String> tail = new ArrayDeque<>();
+    private long omitted;
+
+    public BoundedConsumer() {
+        this(Integer.getInteger(HEAD_LINES, 100), Integer.getInteger(TAIL_LINES, 400), Integer.getInteger(MAX_LINE_LENGTH, 1000));
+    }
+
+    public BoundedConsumer(int headLines, int tailLines, int maxLineLength) {
+        this.headLines = Math.max(headLines, 0);
+        this.tailLines = Math.max(tailLines, 0);
+        this.maxLineLength = Math.max(maxLineLength, 1);
+    }
+
+    @Override
+    public synchronized void consumeLine(String line) {
+        if (line.length() > maxLineLength) {
+            line = line.substring(0, maxLineLength) + String.format("... [%d characters omitted]", line.length() - maxLineLength);
+        }
+        if (head.size() < headLines) {
+            head.add(line);
+            return;
+        }
+        tail.addLast(line);
+        if (tail.size() > tailLines) {
+            tail.removeFirst();
+            omitted++;
+        }
+    }
+
+    @Override
+    public synchronized List<String> asList() {
+        List<String> lines = new ArrayList<>(head);
+        if (omitted > 0) {
+            lines.add(String.format("[... %d lines omitted ...]", omitted));
+        }
+        lines.addAll(tail);
+        return lines;
+    }
+
+    public synchronized long omittedLines() {
+        return omitted;
+    }
+}
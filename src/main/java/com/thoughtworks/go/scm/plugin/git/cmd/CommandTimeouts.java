@@ -0,0 +1,75 @@
+package com.thoughtworks.go.scm.plugin.git.cmd;
+
+import org.apache.commons.exec.CommandLine;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Time budgets for git commands, by subcommand. Network transfers and whole-tree operations get an hour, remote
+ * listings and history queries a few minutes and local lookups a minute; anything else gets {@value #DEFAULT_SECONDS}
+ * seconds. Each budget can be overridden in seconds with a {@code git.path.material.timeout.<subcommand>} system
+ * property (e.g. {@code git.path.material.timeout.fetch}), and the default with {@value #DEFAULT}. A budget of zero or
+ * less disables the timeout.
+ */
+public class CommandTimeouts {
+    public static final String PREFIX = "git.path.material.timeout.";
+    public static final String DEFAULT = PREFIX + "default";
+    static final long DEFAULT_SECONDS = 600;
+    private static final Map<String, Long> BUILT_IN_SECONDS = Map.ofEntries(
+            Map.entry("clone", 3600L), Map.entry("fetch", 3600L), Map.entry("pull", 3600L), Map.entry("push", 3600L),
+            Map.entry("submodule", 3600L), Map.entry("gc", 3600L), Map.entry("reset", 3600L), Map.entry("clean", 3600L),
+            Map.entry("checkout", 3600L),
+            Map.entry("ls-remote", 120L), Map.entry("log", 300L), Map.entry("diff-tree", 300L), Map.entry("show", 300L),
+            Map.entry("config", 60L), Map.entry("rev-parse", 60L), Map.entry("merge-base", 60L), Map.entry("remote", 60L),
+            Map.entry("status", 60L), Map.entry("symbolic-ref", 60L), Map.entry("cat-file", 60L));
+    private static final Set<String> OPTIONS_WITH_VALUE = Set.of("-c", "-C", "--git-dir", "--work-tree", "--namespace");
+
+    private CommandTimeouts() {}
+
+    /**
+     * @return the time budget for {@code commandLine}, or {@code null} if it may run indefinitely.
+     */
+    public static Duration forCommand(CommandLine commandLine) {
+        String subcommand = subcommand(commandLine);
+        long seconds = Long.getLong(PREFIX + subcommand, BUILT_IN_SECONDS.getOrDefault(subcommand, Long.getLong(DEFAULT, DEFAULT_SECONDS)));
+        return seconds > 0 ? Duration.ofSeconds(seconds) : null;
+    }
+
+    /**
+     * @return a short description of what {@code commandLine} does, e.g. {@code git submodule update}, for reporting.
+     */
+    public static String phase(CommandLine commandLine) {
+        String subcommand = subcommand(commandLine);
+        if (subcommand.equals("default")) {
+            return commandLine.getExecutable();
+        }
+        String[] args = commandLine.getArguments();
+        int index = subcommandIndex(args);
+        if (subcommand.equals("submodule") && index + 1 < args.length && !args[index + 1].startsWith("-")) {
+            return commandLine.getExecutable() + " submodule " + args[index + 1];
+        }
+        return commandLine.getExecutable() + " " + subcommand;
+    }
+
+    /**
+     * @return the git subcommand {@code commandLine} runs, e.g. {@code fetch}, or {@code default} if there is none.
+     */
+    public static String subcommand(CommandLine commandLine) {
+        if (!"git".equals(commandLine.getExecutable())) {
+            return "default";
+        }
+        String[] args = commandLine.getArguments();
+        int index = subcommandIndex(args);
+        return index < args.length ? args[index] : "default";
+    }
+
+    private static int subcommandIndex(String[] args) {
+        int index = 0;
+        while (index < args.length && args[index].startsWith("-")) {
+            index += OPTIONS_WITH_VALUE.contains(args[index]) ? 2 : 1;
+        }
+        return index;
+    }
+}
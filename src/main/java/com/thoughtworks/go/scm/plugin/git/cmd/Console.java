@@ -1,16 +1,46 @@
 package com.thoughtworks.go.scm.plugin.git.cmd;
 
 import com.thoughtworks.go.scm.plugin.util.StringUtil;
-import org.apache.commons.exec.*;
+import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.util.StringUtils;
 
 import java.io.File;
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Runs git commands with {@link ProcessBuilder}. Standard output is read on the calling thread and standard error on a
+ * pooled daemon thread, so a command costs at most one extra thread, which is reused across commands.
+ * <p>
+ * Each command runs within the time budget {@link CommandTimeouts} gives its subcommand. A command still running when
+ * its budget expires is killed along with every process it started (e.g. ssh or a credential helper), which would
+ * otherwise keep its output open and the caller waiting. Commands are only started once the {@link ProcessScheduler}
+ * admits them.
+ */
 public class Console {
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService STDERR_READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "git-path-material-stderr-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "git-path-material-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        WATCHDOG.setRemoveOnCancelPolicy(true);
+    }
+
     public static CommandLine createCommand(String... args) {
         CommandLine gitCmd = new CommandLine("git");
         gitCmd.addArguments(args, false);
@@ -18,28 +48,104 @@ public class Console {
     }
 
     public static ConsoleResult runOrBomb(CommandLine commandLine, File workingDir, ProcessOutputStreamConsumer stdOut, ProcessOutputStreamConsumer stdErr, List<String> redactables) {
-        Executor executor = DefaultExecutor
-                .builder()
-                .setExecuteStreamHandler(new PumpStreamHandler(stdOut, stdErr))
-                .setWorkingDirectory(workingDir)
-                .get();
+        return runOrBomb(commandLine, workingDir, stdOut, stdErr, redactables, null, ProcessScheduler.Priority.NORMAL);
+    }
+
+    /**
+     * Like {@link #runOrBomb(CommandLine, File, ProcessOutputStreamConsumer, ProcessOutputStreamConsumer, List)}, once
+     * the {@link ProcessScheduler} admits the command at {@code priority}, against the remote {@code host} if any.
+     * Time spent waiting does not count towards the command's time budget.
+     */
+    public static ConsoleResult runOrBomb(CommandLine commandLine, File workingDir, ProcessOutputStreamConsumer stdOut, ProcessOutputStreamConsumer stdErr, List<String> redactables, String host, ProcessScheduler.Priority priority) {
+        try (ProcessScheduler.Slot ignored = ProcessScheduler.instance().acquire(host, priority)) {
+            return run(commandLine, workingDir, stdOut, stdErr, redactables);
+        }
+    }
 
+    private static ConsoleResult run(CommandLine commandLine, File workingDir, ProcessOutputStreamConsumer stdOut, ProcessOutputStreamConsumer stdErr, List<String> redactables) {
+        Duration timeout = CommandTimeouts.forCommand(commandLine);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Process process = null;
+        ScheduledFuture<?> watchdog = null;
+        int exitCode;
         try {
-            int exitCode = executor.execute(commandLine);
-            return new ConsoleResult(exitCode, stdOut.output(), stdErr.output());
-        } catch (ExecuteException e) {
-            throw new RuntimeException(String.format("%s exited with code %d (%s%s)",
-                    StringUtil.replaceSecretText(commandLine.getExecutable(), redactables),
-                    e.getExitValue(),
+            process = new ProcessBuilder(commandLine.toStrings()).directory(workingDir).start();
+            if (timeout != null) {
+                Process started = process;
+                watchdog = WATCHDOG.schedule(() -> {
+                    if (started.isAlive()) {
+                        timedOut.set(true);
+                        destroyTree(started);
+                    }
+                }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            process.getOutputStream().close();
+
+            Future<?> stdErrReader = STDERR_READERS.submit(readLines(process.getErrorStream(), stdErr));
+            readLines(process.getInputStream(), stdOut).call();
+            exitCode = process.waitFor();
+            stdErrReader.get();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (timedOut.get()) {
+                exitCode = -1;
+            } else {
+                Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                throw new RuntimeException(String.format("%s failed: %s (%s%s)",
+                        StringUtil.replaceSecretText(commandLine.getExecutable(), redactables),
+                        StringUtil.replaceSecretText(cause.getMessage(), redactables),
+                        StringUtil.replaceSecretText(niceCommandLine(commandLine), redactables),
+                        workingDir == null ? "" : " in " + workingDir), cause);
+            }
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+            if (process != null && process.isAlive()) {
+                destroyTree(process);
+            }
+        }
+
+        if (timedOut.get()) {
+            throw new RuntimeException(String.format("%s timed out after %s seconds (%s%s)",
+                    StringUtil.replaceSecretText(CommandTimeouts.phase(commandLine), redactables),
+                    timeout.toSeconds(),
                     StringUtil.replaceSecretText(niceCommandLine(commandLine), redactables),
                     workingDir == null ? "" : " in " + workingDir));
-        } catch (Exception e) {
-            throw new RuntimeException(String.format("%s failed: %s (%s%s)",
+        }
+        if (exitCode != 0) {
+            throw new RuntimeException(String.format("%s exited with code %d (%s%s)",
                     StringUtil.replaceSecretText(commandLine.getExecutable(), redactables),
-                    StringUtil.replaceSecretText(e.getMessage(), redactables),
+                    exitCode,
                     StringUtil.replaceSecretText(niceCommandLine(commandLine), redactables),
-                    workingDir == null ? "" : " in " + workingDir), e);
+                    workingDir == null ? "" : " in " + workingDir));
         }
+        return new ConsoleResult(exitCode, output(stdOut), output(stdErr));
+    }
+
+    /**
+     * Kills {@code process} and all of its descendants. Descendants are collected first, as they are re-parented and can
+     * no longer be found once the process itself has exited.
+     */
+    private static void destroyTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().toList();
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    private static Callable<Void> readLines(InputStream stream, ProcessOutputStreamConsumer consumer) {
+        return () -> {
+            try (stream) {
+                OutputLineReader.readLines(stream, consumer == null ? line -> {} : consumer::consumeLine);
+            }
+            return null;
+        };
+    }
+
+    private static List<String> output(ProcessOutputStreamConsumer consumer) {
+        return consumer == null ? List.of() : consumer.output();
     }
 
     private static String niceCommandLine(CommandLine commandLine) {
@@ -0,0 +1,41 @@
+package com.thoughtworks.go.scm.plugin.git.cmd;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hands each line to a handler as it is read, without retaining any output, for callers that parse output as it
+ * streams in. Output is consumed on a pump thread, so a handler failure is held back, the remaining output is drained
+ * unhandled, and the failure is rethrown by {@link #rethrowFailure()} once the command has finished.
+ */
+public class LineHandlerConsumer implements StreamConsumer {
+    private final Consumer<String> handler;
+    private volatile RuntimeException failure;
+
+    public LineHandlerConsumer(Consumer<String> handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void consumeLine(String line) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            handler.accept(line);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    @Override
+    public List<String> asList() {
+        return List.of();
+    }
+
+    public void rethrowFailure() {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
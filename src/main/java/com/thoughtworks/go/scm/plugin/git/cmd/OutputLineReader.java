@@ -0,0 +1,100 @@
+package com.thoughtworks.go.scm.plugin.git.cmd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Splits a process' output into lines at the byte level and decodes each line from UTF-8 in one go. A line ends at
+ * {@code \n}, {@code \r\n} or a lone {@code \r} (as used by git's progress output), matching the line handling of the
+ * commons-exec stream pumps this replaces.
+ * <p>
+ * Lines are cut to at most {@value #MAX_LINE_BYTES} bytes (default 64 KiB), at a character boundary, so that a single
+ * huge line (e.g. of a commit message) is never buffered as a whole; the bytes cut off are counted and reported at the
+ * end of the line, as {@link BoundedConsumer} does.
+ */
+class OutputLineReader {
+    static final String MAX_LINE_BYTES = "git.path.material.output.max.line.bytes";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int maxLineBytes;
+    private byte[] line = new byte[256];
+    private int length;
+    private long omitted;
+    private boolean afterCarriageReturn;
+
+    private OutputLineReader(int maxLineBytes) {
+        this.maxLineBytes = Math.max(maxLineBytes, 4);
+    }
+
+    static void readLines(InputStream in, Consumer<String> lines) throws IOException {
+        readLines(in, lines, Integer.getInteger(MAX_LINE_BYTES, 64 * 1024));
+    }
+
+    static void readLines(InputStream in, Consumer<String> lines, int maxLineBytes) throws IOException {
+        new OutputLineReader(maxLineBytes).read(in, lines);
+    }
+
+    private void read(InputStream in, Consumer<String> lines) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                if (b == '\n' || b == '\r') {
+                    if (!(b == '\n' && afterCarriageReturn)) {
+                        append(buffer, start, i - start);
+                        emit(lines);
+                    }
+                    start = i + 1;
+                }
+                afterCarriageReturn = b == '\r';
+            }
+            append(buffer, start, read - start);
+        }
+        if (length > 0 || omitted > 0) {
+            emit(lines);
+        }
+    }
+
+    private void append(byte[] bytes, int offset, int count) {
+        int kept = Math.min(count, maxLineBytes - length);
+        omitted += count - kept;
+        if (kept == 0) {
+            return;
+        }
+        if (length + kept > line.length) {
+            line = Arrays.copyOf(line, Math.min(Math.max(line.length * 2, length + kept), maxLineBytes));
+        }
+        System.arraycopy(bytes, offset, line, length, kept);
+        length += kept;
+    }
+
+    private void emit(Consumer<String> lines) {
+        String decoded;
+        if (omitted == 0) {
+            decoded = new String(line, 0, length, StandardCharsets.UTF_8);
+        } else {
+            int end = characterBoundary();
+            decoded = new String(line, 0, end, StandardCharsets.UTF_8) + String.format("... [%d bytes omitted]", omitted + length - end);
+        }
+        length = 0;
+        omitted = 0;
+        lines.accept(decoded);
+    }
+
+    /**
+     * @return the length of the line without the multi-byte character it may have been cut in the middle of.
+     */
+    private int characterBoundary() {
+        int start = length - 1;
+        while (start > 0 && (line[start] & 0xC0) == 0x80) {
+            start--;
+        }
+        int lead = line[start] & 0xFF;
+        int characterLength = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return start + characterLength > length ? start : length;
+    }
+}
@@ -1,10 +1,8 @@
 package com.thoughtworks.go.scm.plugin.git.cmd;
 
-import org.apache.commons.exec.LogOutputStream;
-
 import java.util.List;
 
-public class ProcessOutputStreamConsumer extends LogOutputStream {
+public class ProcessOutputStreamConsumer {
     private final StreamConsumer streamConsumer;
 
     public ProcessOutputStreamConsumer(StreamConsumer streamConsumer) {
@@ -18,9 +16,4 @@ public class ProcessOutputStreamConsumer extends LogOutputStream {
     public List<String> output() {
         return streamConsumer.asList();
     }
-
-    @Override
-    protected void processLine(String line, int level) {
-        consumeLine(line);
-    }
 }
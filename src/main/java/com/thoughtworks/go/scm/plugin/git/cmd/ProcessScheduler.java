@@ -0,0 +1,201 @@
+package com.thoughtworks.go.scm.plugin.git.cmd;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits git processes across the whole plugin, so that a burst of polls queues up rather than running dozens of
+ * fetches at once, saturating the server and tripping the rate limits of the remotes. At most {@value #MAX_PROCESSES}
+ * processes run at once (default twice the number of processors, at least 4), and at most
+ * {@value #MAX_PROCESSES_PER_HOST} (default 4) of them against the same remote host. Waiting commands are admitted by
+ * {@link Priority}, then in the order they arrived; a command waiting for a busy host does not hold up others.
+ * <p>
+ * A thread which already holds a slot is admitted straight away, so nested commands cannot deadlock. Time spent
+ * queueing is recorded per priority ({@link #queueTimes()}) and logged when it exceeds a few seconds.
+ */
+public class ProcessScheduler {
+    public static final String MAX_PROCESSES = "git.path.material.max.processes";
+    public static final String MAX_PROCESSES_PER_HOST = "git.path.material.max.processes.per.host";
+    private static final Duration SLOW_QUEUE = Duration.ofSeconds(5);
+    private static final Logger LOGGER = Logger.getLoggerFor(ProcessScheduler.class);
+    private static ProcessScheduler instance;
+
+    private final int maxProcesses;
+    private final int maxProcessesPerHost;
+    private final ThreadLocal<Slot> held = new ThreadLocal<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final NavigableSet<Waiter> waiting = new TreeSet<>();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private final Map<Priority, QueueTime> queueTimes = new EnumMap<>(Priority.class);
+    private int running;
+    private long arrivals;
+
+    ProcessScheduler(int maxProcesses, int maxProcessesPerHost) {
+        this.maxProcesses = Math.max(maxProcesses, 1);
+        this.maxProcessesPerHost = Math.max(maxProcessesPerHost, 1);
+        for (Priority priority : Priority.values()) {
+            queueTimes.put(priority, new QueueTime(0, 0, 0));
+        }
+    }
+
+    public static synchronized ProcessScheduler instance() {
+        if (instance == null) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            instance = new ProcessScheduler(Integer.getInteger(MAX_PROCESSES, Math.max(4, 2 * processors)), Integer.getInteger(MAX_PROCESSES_PER_HOST, 4));
+        }
+        return instance;
+    }
+
+    public enum Priority {
+        /**
+         * Commands somebody is waiting on, e.g. checking a connection.
+         */
+        INTERACTIVE,
+        /**
+         * Polls and checkouts.
+         */
+        NORMAL,
+        /**
+         * Housekeeping which can wait, e.g. garbage collection and prewarming clones.
+         */
+        MAINTENANCE
+    }
+
+    /**
+     * Waits until a process may be started, and returns the slot it runs in, to be closed once the process has exited.
+     *
+     * @param host the remote host the process contacts, or {@code null} if it runs locally.
+     */
+    public Slot acquire(String host, Priority priority) {
+        if (held.get() != null) {
+            return new Slot(null, false);
+        }
+        long queuedAt = System.nanoTime();
+        lock.lock();
+        try {
+            Waiter waiter = new Waiter(priority, arrivals++, host);
+            waiting.add(waiter);
+            try {
+                while (nextAdmissible() != waiter) {
+                    released.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to start a git process", e);
+            } finally {
+                waiting.remove(waiter);
+                // whoever is next may have been waiting on this one, not on a slot
+                released.signalAll();
+            }
+            running++;
+            if (host != null) {
+                runningPerHost.merge(host, 1, Integer::sum);
+            }
+            queueTimes.compute(priority, (p, times) -> times.add(System.nanoTime() - queuedAt));
+        } finally {
+            lock.unlock();
+        }
+
+        Duration queued = Duration.ofNanos(System.nanoTime() - queuedAt);
+        if (queued.compareTo(SLOW_QUEUE) > 0) {
+            LOGGER.info(String.format("Waited %s seconds to start a git process (%s priority%s)", queued.toSeconds(),
+                    priority.name().toLowerCase(Locale.ROOT), host == null ? "" : ", against " + host));
+        }
+        Slot slot = new Slot(host, true);
+        held.set(slot);
+        return slot;
+    }
+
+    private Waiter nextAdmissible() {
+        if (running >= maxProcesses) {
+            return null;
+        }
+        for (Waiter waiter : waiting) {
+            if (waiter.host == null || runningPerHost.getOrDefault(waiter.host, 0) < maxProcessesPerHost) {
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    private void release(String host) {
+        lock.lock();
+        try {
+            running--;
+            if (host != null) {
+                runningPerHost.computeIfPresent(host, (h, count) -> count > 1 ? count - 1 : null);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int waiting() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return for each priority, how many processes it has started and how long they queued, in total and at most.
+     */
+    public Map<Priority, QueueTime> queueTimes() {
+        lock.lock();
+        try {
+            return new EnumMap<>(queueTimes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public record QueueTime(long started, long totalNanos, long maxNanos) {
+        QueueTime add(long nanos) {
+            return new QueueTime(started + 1, totalNanos + nanos, Math.max(maxNanos, nanos));
+        }
+
+        public Duration average() {
+            return Duration.ofNanos(started == 0 ? 0 : totalNanos / started);
+        }
+
+        public Duration max() {
+            return Duration.ofNanos(maxNanos);
+        }
+    }
+
+    public class Slot implements AutoCloseable {
+        private final String host;
+        private final boolean owned;
+        private boolean closed;
+
+        private Slot(String host, boolean owned) {
+            this.host = host;
+            this.owned = owned;
+        }
+
+        @Override
+        public void close() {
+            if (owned && !closed) {
+                closed = true;
+                held.remove();
+                release(host);
+            }
+        }
+    }
+
+    private record Waiter(Priority priority, long arrival, String host) implements Comparable<Waiter> {
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(arrival, other.arrival);
+        }
+    }
+}
@@ -6,7 +6,7 @@ import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
 import com.thoughtworks.go.scm.plugin.git.GitConfig;
 import com.thoughtworks.go.scm.plugin.git.GitHelper;
 import com.thoughtworks.go.scm.plugin.git.HelperFactory;
-import com.thoughtworks.go.scm.plugin.git.cmd.InMemoryConsumer;
+import com.thoughtworks.go.scm.plugin.git.cmd.BoundedConsumer;
 import com.thoughtworks.go.scm.plugin.git.cmd.ProcessOutputStreamConsumer;
 import com.thoughtworks.go.scm.plugin.util.JsonUtils;
 
@@ -33,10 +33,9 @@ public class CheckoutRequestHandler implements RequestHandler {
         try {
             List<String> messages = new ArrayList<>();
             messages.add(String.format("Start updating %s to revision %s from %s", destinationFolder, revision, gitConfig.getUrl()));
-            ProcessOutputStreamConsumer outputConsumer = new ProcessOutputStreamConsumer(new InMemoryConsumer());
+            ProcessOutputStreamConsumer outputConsumer = new ProcessOutputStreamConsumer(new BoundedConsumer());
             GitHelper git = HelperFactory.git(gitConfig, new File(destinationFolder), outputConsumer, outputConsumer);
-            git.cloneOrFetch();
-            git.resetHard(revision);
+            git.cloneOrFetchToRevision(revision);
 
             messages.addAll(outputConsumer.output());
 
@@ -3,13 +3,17 @@ package com.thoughtworks.go.scm.plugin.model.requestHandlers;
 import com.thoughtworks.go.plugin.api.logging.Logger;
 import com.thoughtworks.go.plugin.api.request.GoPluginApiRequest;
 import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
+import com.thoughtworks.go.scm.plugin.git.BranchPatternEvaluator;
 import com.thoughtworks.go.scm.plugin.git.GitConfig;
 import com.thoughtworks.go.scm.plugin.git.GitHelper;
 import com.thoughtworks.go.scm.plugin.git.HelperFactory;
+import com.thoughtworks.go.scm.plugin.git.NegativeResultCache;
 import com.thoughtworks.go.scm.plugin.git.Revision;
+import com.thoughtworks.go.scm.plugin.git.RevisionCache;
+import com.thoughtworks.go.scm.plugin.git.StagingArea;
+import com.thoughtworks.go.scm.plugin.git.TagPatternEvaluator;
 import com.thoughtworks.go.scm.plugin.util.JsonUtils;
 import com.thoughtworks.go.scm.plugin.util.Validator;
-import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.util.HashMap;
@@ -38,14 +42,15 @@ public class GetLatestRevisionRequestHandler implements RequestHandler {
             GitHelper git = HelperFactory.git(gitConfig, flyweightFolder);
             boolean freshClone = git.cloneOrFetch(GitHelper.CloneFailureBehavior.REMOVE_IF_CREATED);
             final List<String> paths = JsonUtils.getPaths(apiRequest);
-            final Revision revision = git.getLatestRevision(paths);
+            final Revision revision = latestRevision(git, gitConfig, paths);
 
             LOGGER.debug(String.format("Fetching latestRevision for paths %s", paths));
 
             if (freshClone && revision == null) {
                 // A brand new material with a path spec that matches no revision would otherwise leave an orphaned
-                // flyweight dir behind forever, because the server will allocate a new one.
-                FileUtils.deleteQuietly(flyweightFolder);
+                // flyweight dir behind forever, because the server will allocate a new one. It is parked rather than
+                // deleted, so the next poll fetches into it instead of cloning again.
+                StagingArea.instance().park(gitConfig, flyweightFolder);
             }
 
             return JsonUtils.renderSuccessApiResponse(revision == null ? Map.of() : Map.of("revision", RevisionUtil.toMap(revision)));
@@ -53,4 +58,36 @@ public class GetLatestRevisionRequestHandler implements RequestHandler {
             return JsonUtils.renderErrorApiResponse(apiRequest, t, gitConfig.redactables());
         }
     }
+
+    private Revision latestRevision(GitHelper git, GitConfig gitConfig, List<String> paths) {
+        if (gitConfig.isTagPattern()) {
+            return TagPatternEvaluator.forMaterial(gitConfig, paths).latestRevision(git, paths);
+        }
+        if (gitConfig.isBranchPattern()) {
+            return BranchPatternEvaluator.forMaterial(gitConfig, paths).latestRevisions(git, paths).stream().findFirst().orElse(null);
+        }
+        String tip = git.remoteTip();
+        RevisionCache cache = RevisionCache.instance();
+        Revision revision = cache.get(tip, paths, gitConfig.isFirstParent());
+        if (revision != null || tip == null) {
+            return revision != null ? revision : git.getLatestRevision(paths);
+        }
+
+        NegativeResultCache negativeResults = NegativeResultCache.instance();
+        String noMatchTip = negativeResults.noMatchTip(gitConfig, paths);
+        boolean incremental = noMatchTip != null && (noMatchTip.equals(tip) || git.isAncestor(noMatchTip, tip));
+        if (incremental) {
+            revision = noMatchTip.equals(tip) ? null : git.getLatestRevisionSince(noMatchTip, tip, paths);
+        } else {
+            revision = git.getLatestRevision(paths);
+        }
+
+        if (revision == null) {
+            negativeResults.recordNoMatch(gitConfig, paths, tip, incremental);
+        } else {
+            negativeResults.remove(gitConfig, paths);
+            cache.put(tip, paths, gitConfig.isFirstParent(), revision);
+        }
+        return revision;
+    }
 }
@@ -3,10 +3,13 @@ package com.thoughtworks.go.scm.plugin.model.requestHandlers;
 import com.thoughtworks.go.plugin.api.logging.Logger;
 import com.thoughtworks.go.plugin.api.request.GoPluginApiRequest;
 import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
+import com.thoughtworks.go.scm.plugin.git.BranchPatternEvaluator;
 import com.thoughtworks.go.scm.plugin.git.GitConfig;
 import com.thoughtworks.go.scm.plugin.git.GitHelper;
 import com.thoughtworks.go.scm.plugin.git.HelperFactory;
+import com.thoughtworks.go.scm.plugin.git.RepositoryIdentity;
 import com.thoughtworks.go.scm.plugin.git.Revision;
+import com.thoughtworks.go.scm.plugin.git.TagPatternEvaluator;
 import com.thoughtworks.go.scm.plugin.util.JsonUtils;
 import com.thoughtworks.go.scm.plugin.util.Validator;
 
@@ -44,7 +47,14 @@ public class LatestRevisionSinceRequestHandler implements RequestHandler {
             GitHelper git = HelperFactory.git(gitConfig, flyweightFolder);
             git.cloneOrFetch();
             final List<String> paths = JsonUtils.getPaths(apiRequest);
-            List<Revision> newerRevisions = git.getRevisionsSince(previousRevision, paths);
+            List<Revision> newerRevisions;
+            if (gitConfig.isTagPattern()) {
+                newerRevisions = TagPatternEvaluator.forMaterial(gitConfig, paths).revisionsSince(git, paths, previousRevision);
+            } else if (gitConfig.isBranchPattern()) {
+                newerRevisions = BranchPatternEvaluator.forMaterial(gitConfig, paths).revisionsSince(git, paths, previousRevision);
+            } else {
+                newerRevisions = git.getRevisionsSince(previousRevision, paths);
+            }
 
             LOGGER.debug(String.format("Fetching newerRevisions for paths %s", paths));
 
@@ -52,6 +62,10 @@ public class LatestRevisionSinceRequestHandler implements RequestHandler {
                 return JsonUtils.renderSuccessApiResponse(null);
             } else {
                 LOGGER.debug(String.format("New commits: %s", newerRevisions.size()));
+                if (newerRevisions.get(0).getRewrittenRevision() != null) {
+                    LOGGER.warn(String.format("Previous revision %s is no longer on branch %s of %s, which was likely force-pushed; only reporting its latest revision",
+                            previousRevision, gitConfig.getEffectiveBranch(), RepositoryIdentity.of(gitConfig)));
+                }
                 return JsonUtils.renderSuccessApiResponse(
                         Map.of("revisions",
                                 newerRevisions
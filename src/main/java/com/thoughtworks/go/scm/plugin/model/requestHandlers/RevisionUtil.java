@@ -5,6 +5,7 @@ import com.thoughtworks.go.scm.plugin.git.Revision;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -15,11 +16,11 @@ public class RevisionUtil {
     private RevisionUtil() {}
 
     public static Map<String, Object> toMap(Revision revision) {
-        return Map.of(
+        Map<String, Object> map = new HashMap<>(Map.of(
                 "revision", revision.getRevision(),
                 "timestamp", ISO8601_FORMAT.format(revision.getTimestamp()),
                 "user", revision.getUser(),
-                "revisionComment", revision.getComment(),
+                "revisionComment", comment(revision),
                 "modifiedFiles",
                 Optional.ofNullable(revision.getModifiedFiles())
                         .map(files -> files
@@ -28,6 +29,31 @@ public class RevisionUtil {
                                         "fileName", file.getFileName(),
                                         "action", file.getAction()))
                                 .collect(Collectors.toList()))
-                        .orElseGet(Collections::emptyList));
+                        .orElseGet(Collections::emptyList)));
+        Map<String, String> data = new HashMap<>();
+        if (revision.getBranch() != null) {
+            data.put("branch", revision.getBranch());
+        }
+        if (revision.getTag() != null) {
+            data.put("tag", revision.getTag());
+        }
+        if (!data.isEmpty()) {
+            map.put("data", data);
+        }
+        return map;
+    }
+
+    private static String comment(Revision revision) {
+        StringBuilder comment = new StringBuilder(Optional.ofNullable(revision.getComment()).orElse(""));
+        if (revision.getOmittedCommentLength() > 0) {
+            comment.append(String.format("\n[truncated, %d more characters]", revision.getOmittedCommentLength()));
+        }
+        if (revision.getOmittedModifiedFiles() > 0) {
+            comment.append(String.format("\n[truncated, %d more modified files]", revision.getOmittedModifiedFiles()));
+        }
+        if (revision.getRewrittenRevision() != null) {
+            comment.append(String.format("\n[history rewritten, %s is no longer on the branch; only the latest change is listed]", revision.getRewrittenRevision()));
+        }
+        return comment.toString();
     }
 }
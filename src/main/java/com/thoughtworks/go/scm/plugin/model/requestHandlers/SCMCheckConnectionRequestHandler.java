@@ -6,6 +6,7 @@ import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
 import com.thoughtworks.go.scm.plugin.git.GitConfig;
 import com.thoughtworks.go.scm.plugin.git.GitHelper;
 import com.thoughtworks.go.scm.plugin.git.HelperFactory;
+import com.thoughtworks.go.scm.plugin.git.StagingArea;
 import com.thoughtworks.go.scm.plugin.util.JsonUtils;
 import com.thoughtworks.go.scm.plugin.util.StringUtil;
 import com.thoughtworks.go.scm.plugin.util.Validator;
@@ -32,6 +33,7 @@ public class SCMCheckConnectionRequestHandler implements RequestHandler {
         if (response.get("status") == null) {
             response.put("status", "success");
             messages.add("Could connect to URL successfully");
+            StagingArea.instance().prewarm(gitConfig);
         }
         response.put("messages", messages);
         return JsonUtils.renderSuccessApiResponse(response);
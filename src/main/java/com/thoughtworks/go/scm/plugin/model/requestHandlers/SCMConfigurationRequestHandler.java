@@ -15,6 +15,9 @@ public class SCMConfigurationRequestHandler implements RequestHandler {
     public static final String CONFIG_PATHS = "path";
     public static final String CONFIG_BRANCH = "branch";
     public static final String CONFIG_SHALLOW_CLONE = "shallow_clone";
+    public static final String CONFIG_FIRST_PARENT = "first_parent";
+    public static final String CONFIG_BRANCH_PATTERN = "branch_pattern";
+    public static final String CONFIG_TAG_PATTERN = "tag_pattern";
 
     @Override
     public GoPluginApiResponse handle(GoPluginApiRequest apiRequest) {
@@ -25,6 +28,9 @@ public class SCMConfigurationRequestHandler implements RequestHandler {
         response.put(CONFIG_PATHS, createField("Monitored Paths", null, true, true, false, "3"));
         response.put(CONFIG_BRANCH, createField("Branch", "master", true, false, false, "4"));
         response.put(CONFIG_SHALLOW_CLONE, createField("Shallow Clone", "false", false, false, false, "5"));
+        response.put(CONFIG_FIRST_PARENT, createField("First Parent History", "false", false, false, false, "6"));
+        response.put(CONFIG_BRANCH_PATTERN, createField("Branch Pattern", null, true, false, false, "7"));
+        response.put(CONFIG_TAG_PATTERN, createField("Tag Pattern", null, true, false, false, "8"));
         return JsonUtils.renderSuccessApiResponse(response);
     }
 
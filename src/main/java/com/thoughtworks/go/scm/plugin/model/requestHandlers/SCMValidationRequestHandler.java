@@ -3,6 +3,7 @@ package com.thoughtworks.go.scm.plugin.model.requestHandlers;
 import com.thoughtworks.go.plugin.api.request.GoPluginApiRequest;
 import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
 import com.thoughtworks.go.scm.plugin.git.GitConfig;
+import com.thoughtworks.go.scm.plugin.git.StagingArea;
 import com.thoughtworks.go.scm.plugin.util.JsonUtils;
 import com.thoughtworks.go.scm.plugin.util.Validator;
 
@@ -18,6 +19,10 @@ public class SCMValidationRequestHandler implements RequestHandler {
         List<Map<String, Object>> response = new ArrayList<>();
 
         validate(response, fieldValidation -> Validator.validateUrl(gitConfig, fieldValidation));
+        validate(response, fieldValidation -> Validator.validateRefPatterns(gitConfig, fieldValidation));
+        if (response.isEmpty()) {
+            StagingArea.instance().prewarm(gitConfig);
+        }
 
         return JsonUtils.renderSuccessApiResponse(response);
     }
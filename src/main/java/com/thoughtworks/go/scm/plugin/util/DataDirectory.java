@@ -0,0 +1,19 @@
+package com.thoughtworks.go.scm.plugin.util;
+
+import java.io.File;
+
+/**
+ * Locates state the plugin keeps outside of GoCD's flyweight and working directories, such as caches which should
+ * survive plugin reloads and server restarts. Defaults to a folder beneath the GoCD process' working directory and can
+ * be moved with the {@value #DATA_DIR} system property.
+ */
+public class DataDirectory {
+    public static final String DATA_DIR = "git.path.material.data.dir";
+
+    private DataDirectory() {}
+
+    public static File resolve(String name) {
+        String base = System.getProperty(DATA_DIR);
+        return new File(StringUtil.isBlank(base) ? new File(System.getProperty("user.dir"), "plugin-data/git-path-material") : new File(base), name);
+    }
+}
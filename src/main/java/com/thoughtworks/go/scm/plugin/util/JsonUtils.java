@@ -119,11 +119,15 @@ public class JsonUtils {
     }
 
     private static GitConfig toBaseGitConfig(Map<String, String> configuration) {
-        return new GitConfig(
+        GitConfig config = new GitConfig(
                 StringUtil.trim(configuration.get(SCMConfigurationRequestHandler.CONFIG_URL)),
                 StringUtil.trim(configuration.get(SCMConfigurationRequestHandler.CONFIG_USERNAME)),
                 StringUtil.trim(configuration.get(SCMConfigurationRequestHandler.CONFIG_PASSWORD)),
                 StringUtil.trim(configuration.get(SCMConfigurationRequestHandler.CONFIG_BRANCH)));
+        config.setFirstParent("true".equalsIgnoreCase(StringUtil.trim(configuration.get(SCMConfigurationRequestHandler.CONFIG_FIRST_PARENT))));
+        config.setBranchPattern(StringUtil.trim(configuration.get(SCMConfigurationRequestHandler.CONFIG_BRANCH_PATTERN)));
+        config.setTagPattern(StringUtil.trim(configuration.get(SCMConfigurationRequestHandler.CONFIG_TAG_PATTERN)));
+        return config;
     }
 
     public static GitConfig toAgentGitConfig(GoPluginApiRequest apiRequest) {
@@ -139,6 +143,7 @@ public class JsonUtils {
     public static GitConfig toServerSideGitConfig(GoPluginApiRequest apiRequest) {
         GitConfig config = toBaseGitConfig(parseScmConfiguration(apiRequest));
         config.setNoCheckout(true);
+        config.setBare(true);
         return config;
     }
 
@@ -0,0 +1,124 @@
+package com.thoughtworks.go.scm.plugin.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs independent tasks on a shared, fixed pool of {@value #THREADS} (default the number of processors, at least 4)
+ * daemon worker threads, with a cap on how many tasks run at once for the same key (typically a repository), across
+ * all callers. The calling thread works through the tasks too, so that tasks which themselves run tasks in parallel
+ * always make progress, however busy the pool is. Results must be written by the tasks themselves, e.g. into the items
+ * they are given, so the caller's ordering is unaffected by the order in which tasks complete.
+ */
+public class Parallel {
+    public static final String THREADS = "git.path.material.worker.threads";
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, Integer.getInteger(THREADS, Math.max(4, Runtime.getRuntime().availableProcessors()))), runnable -> {
+                Thread thread = new Thread(runnable, "git-path-material-worker-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final Map<String, Permits> PERMITS = new ConcurrentHashMap<>();
+
+    private Parallel() {}
+
+    /**
+     * Applies {@code action} to every item, running at most {@code parallelism} of them at once for {@code key}, and
+     * returns once all of them have completed. The first failure stops any remaining items from being started and is
+     * rethrown.
+     */
+    public static <T> void forEach(String key, int parallelism, List<T> items, Consumer<T> action) {
+        if (items.size() <= 1 || parallelism <= 1) {
+            items.forEach(action);
+            return;
+        }
+
+        Permits permits = Permits.acquire(key, parallelism);
+        try {
+            AtomicInteger next = new AtomicInteger();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            CountDownLatch completed = new CountDownLatch(items.size());
+            Runnable worker = () -> {
+                for (int index = next.getAndIncrement(); index < items.size(); index = next.getAndIncrement()) {
+                    try {
+                        if (failure.get() == null) {
+                            permits.acquireUninterruptibly();
+                            try {
+                                action.accept(items.get(index));
+                            } finally {
+                                permits.release();
+                            }
+                        }
+                    } catch (RuntimeException | Error e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        completed.countDown();
+                    }
+                }
+            };
+            for (int i = 1; i < Math.min(parallelism, items.size()); i++) {
+                EXECUTOR.execute(worker);
+            }
+            worker.run();
+
+            try {
+                completed.await();
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for parallel tasks", e);
+            }
+            if (failure.get() instanceof Error error) {
+                throw error;
+            }
+            if (failure.get() != null) {
+                throw (RuntimeException) failure.get();
+            }
+        } finally {
+            permits.release(key);
+        }
+    }
+
+    static boolean hasPermits(String key) {
+        return PERMITS.containsKey(key);
+    }
+
+    /**
+     * The permits of a key, sized to the parallelism last asked for. Callers asking for different parallelism share
+     * the one semaphore, which is resized: when the parallelism drops, tasks already running finish, but no further
+     * ones start until fewer than the new parallelism are running. Permits are dropped once nobody uses them.
+     */
+    private static class Permits extends Semaphore {
+        private int parallelism;
+        private int users;
+
+        private Permits(int parallelism) {
+            super(parallelism, true);
+            this.parallelism = parallelism;
+        }
+
+        static Permits acquire(String key, int parallelism) {
+            return PERMITS.compute(key, (k, permits) -> {
+                if (permits == null) {
+                    permits = new Permits(parallelism);
+                } else if (permits.parallelism < parallelism) {
+                    permits.release(parallelism - permits.parallelism);
+                } else if (permits.parallelism > parallelism) {
+                    permits.reducePermits(permits.parallelism - parallelism);
+                }
+                permits.parallelism = parallelism;
+                permits.users++;
+                return permits;
+            });
+        }
+
+        void release(String key) {
+            PERMITS.computeIfPresent(key, (k, permits) -> --permits.users == 0 ? null : permits);
+        }
+    }
+}
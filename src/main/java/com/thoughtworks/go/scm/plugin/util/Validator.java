@@ -33,4 +33,11 @@ public class Validator {
             }
         }
     }
+
+    public static void validateRefPatterns(GitConfig gitConfig, Map<String, Object> fieldMap) {
+        if (gitConfig.isBranchPattern() && gitConfig.isTagPattern()) {
+            fieldMap.put("key", "tag_pattern");
+            fieldMap.put("message", "Tag Pattern cannot be combined with Branch Pattern");
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BranchPatternEvaluatorTest {
+    @Test
+    public void shouldMatchBranchesByCommaSeparatedGlobs() {
+        Pattern pattern = BranchPatternEvaluator.compile("release/*, hotfix-?, feature/**");
+
+        assertThat(pattern.matcher("release/1.0").matches()).isTrue();
+        assertThat(pattern.matcher("release/1.0/fix").matches()).isFalse();
+        assertThat(pattern.matcher("release").matches()).isFalse();
+        assertThat(pattern.matcher("hotfix-1").matches()).isTrue();
+        assertThat(pattern.matcher("hotfix-12").matches()).isFalse();
+        assertThat(pattern.matcher("feature/team/thing").matches()).isTrue();
+        assertThat(pattern.matcher("master").matches()).isFalse();
+    }
+
+    @Test
+    public void shouldMatchOtherCharactersLiterally() {
+        Pattern pattern = BranchPatternEvaluator.compile("v1.x+(lts)");
+
+        assertThat(pattern.matcher("v1.x+(lts)").matches()).isTrue();
+        assertThat(pattern.matcher("v1-x+(lts)").matches()).isFalse();
+    }
+}
@@ -1,7 +1,9 @@
 package com.thoughtworks.go.scm.plugin.git;
 
+import com.thoughtworks.go.scm.plugin.git.cmd.Console;
 import com.thoughtworks.go.scm.plugin.git.cmd.InMemoryConsumer;
 import com.thoughtworks.go.scm.plugin.git.cmd.ProcessOutputStreamConsumer;
+import com.thoughtworks.go.scm.plugin.util.DataDirectory;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.AfterEach;
@@ -11,6 +13,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -19,6 +22,7 @@ import java.util.zip.ZipInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static uk.org.webcompere.systemstubs.SystemStubs.restoreSystemProperties;
@@ -28,8 +32,10 @@ public class GitHelperTest {
     protected final File testRepository = new File(System.getProperty("java.io.tmpdir"), UUID.randomUUID().toString());
     protected final File simpleGitRepository = new File(System.getProperty("java.io.tmpdir"), "simple-git-repository");
     private final File subModuleGitRepository = new File(System.getProperty("java.io.tmpdir"), "sub-module-git-repository");
+    private final File movedSubModuleGitRepository = new File(System.getProperty("java.io.tmpdir"), "moved-sub-module-git-repository");
     private final File branchGitRepository = new File(System.getProperty("java.io.tmpdir"), "branch-git-repository");
     private final File mergeCommitGitRepository = new File(System.getProperty("java.io.tmpdir"), "merge-commit-git-repository");
+    private final File tagIndex = new File(System.getProperty("java.io.tmpdir"), UUID.randomUUID() + ".json");
 
     protected GitHelper getHelper(GitConfig gitConfig, File workingDir) {
         ProcessOutputStreamConsumer stdOut = new ProcessOutputStreamConsumer(new InMemoryConsumer() {
@@ -60,8 +66,10 @@ public class GitHelperTest {
         FileUtils.deleteQuietly(testRepository);
         FileUtils.deleteQuietly(simpleGitRepository);
         FileUtils.deleteQuietly(subModuleGitRepository);
+        FileUtils.deleteQuietly(movedSubModuleGitRepository);
         FileUtils.deleteQuietly(branchGitRepository);
         FileUtils.deleteQuietly(mergeCommitGitRepository);
+        FileUtils.deleteQuietly(tagIndex);
     }
 
     @Test
@@ -90,6 +98,39 @@ public class GitHelperTest {
         }
     }
 
+    @Test
+    public void shouldLookUpTipOfBranchOnRemote() throws Exception {
+        extractToTmp("/sample-repository/simple-git-repository-3.zip");
+
+        GitHelper git = getHelper(new GitConfig(simpleGitRepository.getAbsolutePath()), null);
+
+        assertThat(git.lsRemoteTip()).isEqualTo("7d14db6ec07f2cfac82195e401780bf127349ddb");
+        assertThat(getHelper(new GitConfig(simpleGitRepository.getAbsolutePath(), null, null, "missing"), null).lsRemoteTip()).isNull();
+    }
+
+    @Test
+    public void shouldFetchBareRepositoryOnceBranchMovedOnRemote() throws Exception {
+        extractToTmp("/sample-repository/simple-git-repository-3.zip");
+
+        GitConfig config = new GitConfig(simpleGitRepository.getAbsolutePath());
+        config.setNoCheckout(true);
+        config.setBare(true);
+        GitHelper git = getHelper(config, testRepository);
+        git.cloneOrFetch();
+        git.cloneOrFetch();
+        assertThat(git.remoteTip()).isEqualTo("7d14db6ec07f2cfac82195e401780bf127349ddb");
+
+        GitHelper gitRemote = getHelper(new GitConfig(simpleGitRepository.getAbsolutePath()), simpleGitRepository);
+        File file = new File(simpleGitRepository, "b.txt");
+        FileUtils.writeStringToFile(file, "changed", StandardCharsets.UTF_8);
+        gitRemote.add(file);
+        gitRemote.commit("Change to b.txt");
+
+        git.cloneOrFetch();
+
+        assertThat(git.remoteTip()).isEqualTo(gitRemote.currentRevision());
+    }
+
     @Test
     public void shouldGetRevisionForRepository() throws Exception {
         extractToTmp("/sample-repository/simple-git-repository-1.zip");
@@ -199,6 +240,146 @@ public class GitHelperTest {
         assertThat(eitherRevisions.get(2).getRevision()).isEqualTo("1320a78055558603a2c29d803bbaa50d3542ff50");
     }
 
+    @Test
+    public void shouldOnlyReturnLatestRevisionWhenPreviousRevisionIsNoLongerOnBranch() throws Exception {
+        extractToTmp("/sample-repository/merge-commit-git-repository.zip");
+
+        GitHelper git = getHelper(new GitConfig(mergeCommitGitRepository.getAbsolutePath()), testRepository);
+        git.cloneOrFetch();
+
+        List<Revision> revisions = git.getRevisionsSince("ae29ea171fc4a6a69b2ab7fcc737c4fef4a17d46", List.of("file.txt"));
+
+        assertThat(revisions).hasSize(1);
+        assertThat(revisions.get(0).getRevision()).isEqualTo("bb3d335948af4f380f0f0a8884df982e49f272c7");
+        assertThat(revisions.get(0).getRewrittenRevision()).isEqualTo("ae29ea171fc4a6a69b2ab7fcc737c4fef4a17d46");
+        assertThat(git.getRevisionsSince("3b8260d3bd01cca30c3ed3154e270ac43bed89f5", List.of("file.txt")))
+                .singleElement()
+                .satisfies(revision -> assertThat(revision.getRewrittenRevision()).isNull());
+        assertThat(git.getRevisionsSince("0000000000000000000000000000000000000000", List.of("file.txt")))
+                .singleElement()
+                .satisfies(revision -> assertThat(revision.getRevision()).isEqualTo("bb3d335948af4f380f0f0a8884df982e49f272c7"));
+    }
+
+    @Test
+    public void shouldEvaluateLatestRevisionsOfNewCommitsForAllPathSets() throws Exception {
+        extractToTmp("/sample-repository/simple-git-repository-3.zip");
+
+        GitConfig config = new GitConfig(simpleGitRepository.getAbsolutePath());
+        config.setNoCheckout(true);
+        GitHelper git = getHelper(config, testRepository);
+        git.cloneOrFetch();
+
+        assertThat(git.getLatestRevision(List.of("a.txt")).getRevision()).isEqualTo("7d14db6ec07f2cfac82195e401780bf127349ddb");
+        assertThat(git.getLatestRevision(List.of("b.txt")).getRevision()).isEqualTo("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+
+        GitHelper gitRemote = getHelper(new GitConfig(simpleGitRepository.getAbsolutePath()), simpleGitRepository);
+        File file = new File(simpleGitRepository, "b.txt");
+        FileUtils.writeStringToFile(file, "changed", StandardCharsets.UTF_8);
+        gitRemote.add(file);
+        gitRemote.commit("Change to b.txt");
+        String newCommit = gitRemote.currentRevision();
+
+        git.cloneOrFetch();
+
+        assertThat(git.getLatestRevision(List.of("a.txt")).getRevision()).isEqualTo("7d14db6ec07f2cfac82195e401780bf127349ddb");
+        assertThat(git.getLatestRevision(List.of("b.txt")).getRevision()).isEqualTo(newCommit);
+        assertThat(git.getLatestRevision(List.of("c.txt"))).isNull();
+    }
+
+    @Test
+    public void shouldFindLatestRevisionsOfBranchesMatchingPattern() throws Exception {
+        extractToTmp("/sample-repository/merge-commit-git-repository.zip");
+
+        GitConfig config = new GitConfig(mergeCommitGitRepository.getAbsolutePath());
+        config.setNoCheckout(true);
+        config.setBare(true);
+        config.setBranchPattern("master, test-*");
+        GitHelper git = getHelper(config, testRepository);
+        git.cloneOrFetch();
+        BranchPatternEvaluator evaluator = new BranchPatternEvaluator("merge-commit-git-repository", config.getBranchPattern());
+
+        List<Revision> revisions = evaluator.latestRevisions(git, List.of("file.txt"));
+
+        assertThat(revisions).extracting(Revision::getBranch, Revision::getRevision).containsExactly(
+                tuple("test-branch", "66a1b17514622a8e4a620a033cca3715ef870e71"),
+                tuple("master", "bb3d335948af4f380f0f0a8884df982e49f272c7"));
+        assertThat(evaluator.revisionsSince(git, List.of("file.txt"), "66a1b17514622a8e4a620a033cca3715ef870e71")).isEmpty();
+        assertThat(new BranchPatternEvaluator("merge-commit-git-repository", config.getBranchPattern()).revisionsSince(git, List.of("file.txt"), "bb3d335948af4f380f0f0a8884df982e49f272c7"))
+                .extracting(Revision::getRevision)
+                .containsExactly("66a1b17514622a8e4a620a033cca3715ef870e71");
+    }
+
+    @Test
+    public void shouldFindLatestMatchingTagWhichChangedPaths() throws Exception {
+        extractToTmp("/sample-repository/simple-git-repository-3.zip");
+        tag("v1", "012e893acea10b140688d11beaa728e8c60bd9f6");
+        tag("v2", "1320a78055558603a2c29d803bbaa50d3542ff50");
+        tag("v3", "24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+        tag("other", "7d14db6ec07f2cfac82195e401780bf127349ddb");
+
+        GitConfig config = new GitConfig(simpleGitRepository.getAbsolutePath());
+        config.setNoCheckout(true);
+        config.setBare(true);
+        config.setTagPattern("v*");
+        GitHelper git = getHelper(config, testRepository);
+        git.cloneOrFetch();
+        TagPatternEvaluator evaluator = new TagPatternEvaluator(tagIndex, config.getTagPattern());
+
+        Revision revision = evaluator.latestRevision(git, List.of("b.txt"));
+
+        assertThat(revision.getRevision()).isEqualTo("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+        assertThat(revision.getTag()).isEqualTo("v3");
+        assertThat(evaluator.revisionsSince(git, List.of("b.txt"), "24ce45d1a1427b643ae859777417bbc9f0d7cec8")).isEmpty();
+        assertThat(new TagPatternEvaluator(tagIndex, config.getTagPattern()).revisionsSince(git, List.of("b.txt"), "012e893acea10b140688d11beaa728e8c60bd9f6"))
+                .extracting(Revision::getTag)
+                .containsExactly("v3");
+    }
+
+    @Test
+    public void shouldTruncateModifiedFilesAndCommentsBeyondConfiguredLimits() throws Exception {
+        restoreSystemProperties(() -> {
+            System.setProperty(GitHelper.MAX_MODIFIED_FILES, "1");
+            System.setProperty(GitModificationParser.MAX_COMMENT_LENGTH, "6");
+            extractToTmp("/sample-repository/simple-git-repository-2.zip");
+
+            GitHelper git = getHelper(new GitConfig(simpleGitRepository.getAbsolutePath()), testRepository);
+            git.cloneOrFetch();
+
+            Revision revision = git.getDetailsForRevision("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+
+            assertThat(revision.getComment()).isEqualTo("3\ntest");
+            assertThat(revision.getOmittedCommentLength()).isEqualTo("\nmultiline\ncomment".length());
+            assertThat(revision.getModifiedFiles()).containsExactly(new ModifiedFile("a.txt", "modified"));
+            assertThat(revision.getOmittedModifiedFiles()).isEqualTo(1);
+            assertThat(revision.isTruncated()).isTrue();
+        });
+    }
+
+    @Test
+    public void shouldNotStoreRevisionsParsedFromShallowRepositories() throws Exception {
+        File dataDir = new File(System.getProperty("java.io.tmpdir"), UUID.randomUUID().toString());
+        try {
+            restoreSystemProperties(() -> {
+                System.setProperty(DataDirectory.DATA_DIR, dataDir.getAbsolutePath());
+                extractToTmp("/sample-repository/simple-git-repository-3.zip");
+                String url = "file://" + simpleGitRepository.getAbsolutePath();
+                git(simpleGitRepository.getParentFile(), "clone", "--bare", "--depth=1", url, testRepository.getAbsolutePath());
+                GitConfig config = new GitConfig(url);
+                config.setBare(true);
+                GitHelper git = getHelper(config, testRepository);
+
+                // a boundary commit is diffed against nothing, which lists every file as added
+                assertThat(git.getDetailsForRevision("7d14db6ec07f2cfac82195e401780bf127349ddb").getModifiedFiles()).hasSize(2);
+                git(testRepository, "fetch", "--unshallow", "origin");
+
+                assertThat(git.getDetailsForRevision("7d14db6ec07f2cfac82195e401780bf127349ddb").getModifiedFiles())
+                        .containsExactly(new ModifiedFile("a.txt", "modified"));
+            });
+        } finally {
+            FileUtils.deleteQuietly(dataDir);
+        }
+    }
+
     @Test
     public void shouldCheckoutBranch() throws Exception {
         extractToTmp("/sample-repository/branch-git-repository.zip");
@@ -256,6 +437,49 @@ public class GitHelperTest {
         });
     }
 
+    @Test
+    public void shouldCleanSyncAndUpdateEverySubModuleWhenRunningSubModuleJobsInParallel() throws Exception {
+        restoreSystemProperties(() -> {
+            System.setProperty(GitHelper.GIT_SUBMODULE_ALLOW_FILE_PROTOCOL, "Y");
+            System.setProperty(GitHelper.SUBMODULE_JOBS, "4");
+            extractToTmp("/sample-repository/simple-git-repository-1.zip");
+            extractToTmp("/sample-repository/sub-module-git-repository.zip");
+            List<String> submodules = List.of("sub-module", "other-sub-module");
+
+            GitHelper gitRemote = getHelper(new GitConfig(simpleGitRepository.getAbsolutePath()), simpleGitRepository);
+            submodules.forEach(submodule -> gitRemote.submoduleAdd(subModuleGitRepository.getAbsolutePath(), submodule, submodule));
+            gitRemote.commit("add sub-modules");
+
+            GitHelper gitMain = getHelper(new GitConfig(simpleGitRepository.getAbsolutePath()), testRepository);
+            gitMain.cloneOrFetch();
+            for (String submodule : submodules) {
+                FileUtils.writeStringToFile(new File(testRepository, submodule + "/a.txt"), "modified", StandardCharsets.UTF_8);
+                FileUtils.writeStringToFile(new File(testRepository, submodule + "/untracked.txt"), "untracked", StandardCharsets.UTF_8);
+            }
+
+            // move the sub-module's repository and add a commit to it
+            FileUtils.copyDirectory(subModuleGitRepository, movedSubModuleGitRepository);
+            commitFile(movedSubModuleGitRepository, "a.txt", "3", "3");
+            for (String submodule : submodules) {
+                git(simpleGitRepository, "config", "--file", ".gitmodules", "submodule." + submodule + ".url", movedSubModuleGitRepository.getAbsolutePath());
+                git(new File(simpleGitRepository, submodule), "pull", "--ff-only", movedSubModuleGitRepository.getAbsolutePath(), "master");
+                git(simpleGitRepository, "add", submodule);
+            }
+            git(simpleGitRepository, "add", ".gitmodules");
+            gitRemote.commit("update sub-modules");
+
+            gitMain.fetchAndResetToHead(null);
+
+            for (String submodule : submodules) {
+                File submoduleDir = new File(testRepository, submodule);
+                assertThat(new File(submoduleDir, "untracked.txt")).doesNotExist();
+                assertThat(new File(submoduleDir, "a.txt")).hasContent("3");
+                assertThat(gitMain.getSubModuleCommitCount(submodule)).isEqualTo(3);
+                assertThat(getHelper(null, submoduleDir).workingRepositoryUrl()).isEqualTo(movedSubModuleGitRepository.getAbsolutePath());
+            }
+        });
+    }
+
     @Test
     public void shouldWorkWithRepositoriesWithSubModules() throws Exception {
         restoreSystemProperties(() -> {
@@ -291,6 +515,28 @@ public class GitHelperTest {
         assertThat(new File(testRepository, "b.txt").exists()).isEqualTo(false);
     }
 
+    @Test
+    public void shouldCloneOrFetchDirectlyToRevision() throws Exception {
+        extractToTmp("/sample-repository/simple-git-repository-2.zip");
+
+        GitHelper git = getHelper(new GitConfig(simpleGitRepository.getAbsolutePath()), testRepository);
+        assertThat(git.cloneOrFetchToRevision("1320a78055558603a2c29d803bbaa50d3542ff50")).isTrue();
+
+        assertThat(git.currentRevision()).isEqualTo("1320a78055558603a2c29d803bbaa50d3542ff50");
+        assertThat(new File(testRepository, "a.txt").exists()).isEqualTo(true);
+        assertThat(new File(testRepository, "b.txt").exists()).isEqualTo(false);
+
+        FileUtils.writeStringToFile(new File(testRepository, "untracked.txt"), "junk", StandardCharsets.UTF_8);
+        assertThat(git.cloneOrFetchToRevision("24ce45d1a1427b643ae859777417bbc9f0d7cec8")).isFalse();
+
+        assertThat(git.currentRevision()).isEqualTo("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+        assertThat(new File(testRepository, "b.txt").exists()).isEqualTo(true);
+        assertThat(new File(testRepository, "untracked.txt").exists()).isEqualTo(false);
+
+        assertThat(git.cloneOrFetchToRevision("24ce45d1a1427b643ae859777417bbc9f0d7cec8")).isFalse();
+        assertThat(git.currentRevision()).isEqualTo("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+    }
+
     @Test
     public void shouldInitAddCommit() throws Exception {
         testRepository.mkdirs();
@@ -334,6 +580,84 @@ public class GitHelperTest {
         assertTrue(revision.isMergeCommit(), "Revision should be a merge commit");
     }
 
+    @Test
+    public void shouldSimplifyHistoryAtMergesLikePathLimitedLogWhenEvaluatingPathSetsTogether() throws Exception {
+        simpleGitRepository.mkdirs();
+        git(simpleGitRepository, "init", "--initial-branch=main");
+        commitFile(simpleGitRepository, "p", "base", "base");
+        git(simpleGitRepository, "checkout", "-b", "side");
+        commitFile(simpleGitRepository, "p", "side", "side change p");
+        commitFile(simpleGitRepository, "p", "base", "side revert p");
+        git(simpleGitRepository, "checkout", "main");
+        commitFile(simpleGitRepository, "q", "main", "main change q");
+        git(simpleGitRepository, "-c", "user.name=test", "-c", "user.email=test@example.com", "merge", "--no-ff", "-m", "merge side", "side");
+
+        GitConfig config = new GitConfig(simpleGitRepository.getAbsolutePath(), null, null, "main");
+        config.setNoCheckout(true);
+        GitHelper git = getHelper(config, testRepository);
+        git.cloneOrFetch();
+        git.getLatestRevision(List.of("q"));
+
+        assertThat(git.getLatestRevision(List.of("p")).getRevision()).isEqualTo(git.findLatestRevision(List.of("p")).getRevision());
+        assertThat(git.getLatestRevision(List.of("p")).getComment()).isEqualTo("base");
+        assertThat(git.getLatestRevision(List.of("q")).getRevision()).isEqualTo(git.findLatestRevision(List.of("q")).getRevision());
+    }
+
+    @Test
+    public void shouldFindMergesCombiningChangesOfBothSidesWhenEvaluatingPathSetsTogether() throws Exception {
+        simpleGitRepository.mkdirs();
+        git(simpleGitRepository, "init", "--initial-branch=main");
+        commitFile(simpleGitRepository, "dir/a", "base", "base");
+        commitFile(simpleGitRepository, "other", "base", "other");
+        git(simpleGitRepository, "checkout", "-b", "side");
+        commitFile(simpleGitRepository, "dir/b", "side", "side adds dir/b");
+        git(simpleGitRepository, "checkout", "main");
+        commitFile(simpleGitRepository, "dir/a", "main", "main changes dir/a");
+        git(simpleGitRepository, "-c", "user.name=test", "-c", "user.email=test@example.com", "merge", "--no-ff", "-m", "merge side", "side");
+        commitFile(simpleGitRepository, "other", "main", "main changes other");
+
+        GitConfig config = new GitConfig(simpleGitRepository.getAbsolutePath(), null, null, "main");
+        config.setNoCheckout(true);
+        GitHelper git = getHelper(config, testRepository);
+        git.cloneOrFetch();
+        git.getLatestRevision(List.of("other"));
+
+        // neither side had both files as merged, so the merge itself changed the directory
+        assertThat(git.getLatestRevision(List.of("dir")).getComment()).isEqualTo("merge side");
+        assertThat(git.getLatestRevision(List.of("dir")).getRevision()).isEqualTo(git.findLatestRevision(List.of("dir")).getRevision());
+        assertThat(git.getLatestRevision(List.of("dir/b")).getComment()).isEqualTo("side adds dir/b");
+        assertThat(git.getLatestRevision(List.of("other")).getComment()).isEqualTo("main changes other");
+    }
+
+    @Test
+    public void shouldOnlyFollowFirstParentsInFirstParentMode() throws Exception {
+        extractToTmp("/sample-repository/merge-commit-git-repository.zip");
+        GitConfig config = new GitConfig(mergeCommitGitRepository.getAbsolutePath());
+        config.setFirstParent(true);
+
+        GitHelper git = getHelper(config, mergeCommitGitRepository);
+
+        List<String> listed = new ArrayList<>();
+        git.changedFiles("test-branch", 0, 10, new GitHelper.ChangedFilesHandler() {
+            @Override
+            public void diff(String revision, List<String> parents, String parent) {
+                listed.add(revision + " " + parents + " " + parent);
+            }
+
+            @Override
+            public void file(String file) {
+                listed.add(file);
+            }
+        });
+
+        assertThat(listed).containsExactly(
+                "66a1b17514622a8e4a620a033cca3715ef870e71 [ae29ea171fc4a6a69b2ab7fcc737c4fef4a17d46] ae29ea171fc4a6a69b2ab7fcc737c4fef4a17d46", "file.txt",
+                "ae29ea171fc4a6a69b2ab7fcc737c4fef4a17d46 [3b8260d3bd01cca30c3ed3154e270ac43bed89f5] 3b8260d3bd01cca30c3ed3154e270ac43bed89f5", "file.txt",
+                "3b8260d3bd01cca30c3ed3154e270ac43bed89f5 [] null", "file.txt");
+        Revision revision = git.getLatestRevisionSince("ae29ea171fc4a6a69b2ab7fcc737c4fef4a17d46", "test-branch", List.of("file.txt"));
+        verifyRevision(revision, "66a1b17514622a8e4a620a033cca3715ef870e71", "Merge branch 'master' into test-branch", 1477248891000L, List.of(new ModifiedFile("file.txt", "modified")));
+    }
+
 
     @Test
     public void shouldShallowClone() throws Exception {
@@ -381,6 +705,19 @@ public class GitHelperTest {
         assertThat(git.getCommitCount()).isEqualTo(1);
     }
 
+    @Test
+    public void shallowCloneOfBranchPatternShouldCheckOutRevisionOnAnyMatchingBranch() throws Exception {
+        extractToTmp("/sample-repository/merge-commit-git-repository.zip");
+        GitConfig config = new GitConfig("file://" + mergeCommitGitRepository.getAbsolutePath());
+        config.setBranchPattern("master, test-*");
+        config.setShallowClone(new ShallowClone(1, 2));
+        GitHelper git = getHelper(config, testRepository);
+
+        git.cloneOrFetchToRevision("ae29ea171fc4a6a69b2ab7fcc737c4fef4a17d46");
+
+        assertThat(git.currentRevision()).isEqualTo("ae29ea171fc4a6a69b2ab7fcc737c4fef4a17d46");
+    }
+
     @Test
     public void shouldCloneWithNoCheckout() throws Exception {
         extractToTmp("/sample-repository/simple-git-repository-2.zip");
@@ -406,6 +743,63 @@ public class GitHelperTest {
         assertThat(newerRevisions.isEmpty()).isEqualTo(true);
     }
 
+    @Test
+    public void shouldCloneBareRepository() throws Exception {
+        extractToTmp("/sample-repository/simple-git-repository-2.zip");
+
+        GitConfig config = new GitConfig("file://" + simpleGitRepository.getAbsolutePath());
+        config.setNoCheckout(true);
+        config.setBare(true);
+        GitHelper git = getHelper(config, testRepository);
+
+        assertThat(git.cloneOrFetch()).isTrue();
+        assertThat(List.of(testRepository.list())).contains("HEAD", "objects", "refs").doesNotContain(".git", "index", "a.txt");
+        assertThat(git.getCommitCount()).isEqualTo(3);
+        assertThat(git.getBranchToRevisionMap()).containsEntry("master", "24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+        assertThat(git.getLatestRevision().getRevision()).isEqualTo("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+
+        // poll again
+        assertThat(git.cloneOrFetch()).isFalse();
+        assertThat(git.getRevisionsSince("24ce45d1a1427b643ae859777417bbc9f0d7cec8")).isEmpty();
+    }
+
+    @Test
+    public void shouldUpdateRemoteUrlInPlaceWhenOnlyItsSpellingChanged() throws Exception {
+        extractToTmp("/sample-repository/simple-git-repository-2.zip");
+
+        GitConfig config = new GitConfig("file://" + simpleGitRepository.getAbsolutePath());
+        config.setNoCheckout(true);
+        config.setBare(true);
+        assertThat(getHelper(config, testRepository).cloneOrFetch()).isTrue();
+
+        GitConfig respelled = new GitConfig("file://" + simpleGitRepository.getAbsolutePath() + "/");
+        respelled.setNoCheckout(true);
+        respelled.setBare(true);
+        GitHelper git = getHelper(respelled, testRepository);
+
+        assertThat(git.isSameRepository()).isTrue();
+        assertThat(git.cloneOrFetch()).isFalse();
+        assertThat(git.workingRepositoryUrl()).isEqualTo(respelled.getUrl());
+        assertThat(git.getLatestRevision().getRevision()).isEqualTo("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+    }
+
+    @Test
+    public void shouldConvertExistingNoCheckoutCloneToBareRepository() throws Exception {
+        extractToTmp("/sample-repository/simple-git-repository-2.zip");
+
+        GitConfig config = new GitConfig("file://" + simpleGitRepository.getAbsolutePath());
+        config.setNoCheckout(true);
+        getHelper(config, testRepository).cloneOrFetch();
+        assertThat(List.of(testRepository.list())).contains(".git");
+
+        config.setBare(true);
+        GitHelper git = getHelper(config, testRepository);
+
+        assertThat(git.cloneOrFetch()).isFalse();
+        assertThat(List.of(testRepository.list())).contains("HEAD", "objects", "refs").doesNotContain(".git", "index");
+        assertThat(git.getLatestRevision().getRevision()).isEqualTo("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+    }
+
     protected void extractToTmp(String zipResourcePath) throws IOException {
         File zipFile = new File(System.getProperty("java.io.tmpdir"), UUID.randomUUID().toString() + ".zip");
 
@@ -416,6 +810,21 @@ public class GitHelperTest {
         FileUtils.deleteQuietly(zipFile);
     }
 
+    private void tag(String tag, String revision) {
+        git(simpleGitRepository, "tag", tag, revision);
+    }
+
+    private void commitFile(File repository, String file, String content, String message) throws IOException {
+        FileUtils.writeStringToFile(new File(repository, file), content, StandardCharsets.UTF_8);
+        git(repository, "add", file);
+        git(repository, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-m", message);
+    }
+
+    private void git(File repository, String... args) {
+        Console.runOrBomb(Console.createCommand(args), repository,
+                new ProcessOutputStreamConsumer(new InMemoryConsumer()), new ProcessOutputStreamConsumer(new InMemoryConsumer()), List.of());
+    }
+
     private void unzip(String zipFilePath, String destinationDirectoryPath) throws IOException {
         File destinationDirectory = new File(destinationDirectoryPath);
         if (!destinationDirectory.exists()) {
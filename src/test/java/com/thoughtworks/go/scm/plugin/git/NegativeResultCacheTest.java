@@ -0,0 +1,34 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NegativeResultCacheTest {
+    private final GitConfig gitConfig = new GitConfig("https://host/repo.git", null, null, "main");
+
+    @Test
+    public void shouldRememberNoMatchTipPerRepositoryBranchAndPathSet() {
+        NegativeResultCache cache = new NegativeResultCache(Duration.ofHours(1));
+        cache.recordNoMatch(gitConfig, List.of("b", " a"), "tip1", false);
+
+        assertThat(cache.noMatchTip(gitConfig, List.of("a", "b"))).isEqualTo("tip1");
+        assertThat(cache.noMatchTip(gitConfig, List.of("a"))).isNull();
+        assertThat(cache.noMatchTip(new GitConfig("https://host/repo.git", null, null, "other"), List.of("a", "b"))).isNull();
+
+        cache.remove(gitConfig, List.of("a", "b"));
+        assertThat(cache.noMatchTip(gitConfig, List.of("a", "b"))).isNull();
+    }
+
+    @Test
+    public void shouldExpireRecordsAfterTtlEvenWhenExtendedIncrementally() {
+        NegativeResultCache cache = new NegativeResultCache(Duration.ZERO);
+        cache.recordNoMatch(gitConfig, List.of("a"), "tip1", false);
+        cache.recordNoMatch(gitConfig, List.of("a"), "tip2", true);
+
+        assertThat(cache.noMatchTip(gitConfig, List.of("a"))).isNull();
+    }
+}
@@ -0,0 +1,39 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PathTrieTest {
+    @Test
+    public void shouldMatchFilesUnderRegisteredPaths() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.add("config", "config");
+        trie.add("config/prod", "prod");
+        trie.add("./src/main/", "main");
+
+        assertThat(trie.match("config/qa.yaml")).containsExactly("config");
+        assertThat(trie.match("config/prod/app.yaml")).containsExactlyInAnyOrder("config", "prod");
+        assertThat(trie.match("src/main/App.java")).containsExactly("main");
+        assertThat(trie.match("src/test/AppTest.java")).isEmpty();
+        assertThat(trie.match("configuration.yaml")).isEmpty();
+    }
+
+    @Test
+    public void shouldMatchEverythingForRepositoryRoot() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.add(".", "root");
+
+        assertThat(trie.match("any/file.txt")).containsExactly("root");
+    }
+
+    @Test
+    public void shouldOnlyRoutePlainPaths() {
+        assertThat(PathTrie.isRoutable(List.of("a", "b/c"))).isTrue();
+        assertThat(PathTrie.isRoutable(List.of("a", ":(exclude)*README.md"))).isFalse();
+        assertThat(PathTrie.isRoutable(List.of("config/*/qa.yaml"))).isFalse();
+        assertThat(PathTrie.isRoutable(List.of())).isFalse();
+    }
+}
@@ -0,0 +1,84 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import com.thoughtworks.go.scm.plugin.git.RemoteCircuitBreaker.FailureKind;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.org.webcompere.systemstubs.SystemStubs.restoreSystemProperties;
+
+public class RemoteCircuitBreakerTest {
+    private static final String URL = "https://github.com/gocd/gocd.git";
+    private static final List<String> DNS_FAILURE = List.of("fatal: unable to access 'https://github.com/gocd/gocd.git/': Could not resolve host: github.com");
+
+    private final RemoteCircuitBreaker circuitBreaker = new RemoteCircuitBreaker();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void shouldClassifyFailuresByGitErrorOutput() {
+        assertThat(FailureKind.classify(List.of("remote: Invalid username or password.", "fatal: Authentication failed for 'https://github.com/gocd/gocd.git/'"))).isEqualTo(FailureKind.AUTHENTICATION);
+        assertThat(FailureKind.classify(List.of("git@github.com: Permission denied (publickey)."))).isEqualTo(FailureKind.AUTHENTICATION);
+        assertThat(FailureKind.classify(DNS_FAILURE)).isEqualTo(FailureKind.DNS);
+        assertThat(FailureKind.classify(List.of("ssh: connect to host github.com port 22: Connection timed out"))).isEqualTo(FailureKind.TIMEOUT);
+        assertThat(FailureKind.classify(List.of("fatal: unable to access '...': Failed to connect to github.com port 443: Connection refused"))).isEqualTo(FailureKind.UNREACHABLE);
+        assertThat(FailureKind.classify(List.of("fatal: couldn't find remote ref refs/heads/nope"))).isNull();
+    }
+
+    @Test
+    public void shouldFailFastOnceRemoteFailedRepeatedly() {
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> circuitBreaker.call(URL, failing(), () -> DNS_FAILURE)).hasMessage("git exited with code 128");
+        }
+
+        assertThatThrownBy(() -> circuitBreaker.call("https://someone@github.com/gocd/gocd", failing(), () -> DNS_FAILURE))
+                .isExactlyInstanceOf(RuntimeException.class)
+                .hasMessageStartingWith("Not contacting https://github.com/gocd/gocd after 3 consecutive failures (dns)");
+        assertThat(calls).hasValue(3);
+        assertThat(circuitBreaker.call("https://github.com/gocd/other", () -> "ok", List::of)).isEqualTo("ok");
+    }
+
+    @Test
+    public void shouldLetExplicitProbesThroughAndCloseCircuitOnSuccess() {
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> circuitBreaker.call(URL, failing(), () -> DNS_FAILURE));
+        }
+
+        assertThat(circuitBreaker.probe(URL, () -> "ok", List::of)).isEqualTo("ok");
+        assertThat(circuitBreaker.call(URL, () -> "ok", List::of)).isEqualTo("ok");
+    }
+
+    @Test
+    public void shouldRetryOnceBackoffHasPassed() throws Exception {
+        restoreSystemProperties(() -> {
+            System.setProperty(RemoteCircuitBreaker.BACKOFF, "0");
+            for (int i = 0; i < 3; i++) {
+                assertThatThrownBy(() -> circuitBreaker.call(URL, failing(), () -> DNS_FAILURE));
+            }
+
+            assertThatThrownBy(() -> circuitBreaker.call(URL, failing(), () -> DNS_FAILURE)).hasMessage("git exited with code 128");
+            assertThat(calls).hasValue(4);
+            assertThat(circuitBreaker.call(URL, () -> "ok", List::of)).isEqualTo("ok");
+        });
+    }
+
+    @Test
+    public void shouldNotCountFailuresWhichAreNotDownToTheRemote() {
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> circuitBreaker.call(URL, failing(), () -> List.of("fatal: couldn't find remote ref refs/heads/nope")));
+        }
+
+        assertThat(calls).hasValue(5);
+        assertThat(circuitBreaker.call(URL, () -> "ok", List::of)).isEqualTo("ok");
+    }
+
+    private Supplier<String> failing() {
+        return () -> {
+            calls.incrementAndGet();
+            throw new RuntimeException("git exited with code 128");
+        };
+    }
+}
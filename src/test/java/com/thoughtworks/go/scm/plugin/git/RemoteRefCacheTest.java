@@ -0,0 +1,64 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RemoteRefCacheTest {
+    private final GitConfig gitConfig = new GitConfig("https://host/repo.git", "user", "password", "main");
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @Test
+    public void shouldReuseLookupsPerUrlCredentialsAndRef() {
+        RemoteRefCache cache = new RemoteRefCache(Duration.ofHours(1));
+
+        assertThat(cache.tip(gitConfig, "refs/heads/main", this::lookup, true)).isEqualTo("tip1");
+        assertThat(cache.tip(gitConfig, "refs/heads/main", this::lookup, true)).isEqualTo("tip1");
+        assertThat(cache.tip(gitConfig, "refs/heads/other", this::lookup, true)).isEqualTo("tip2");
+        assertThat(cache.tip(new GitConfig("https://host/repo.git", "user", "other", "main"), "refs/heads/main", this::lookup, true)).isEqualTo("tip3");
+        assertThat(cache.tip(new GitConfig("https://host/other.git", "user", "password", "main"), "refs/heads/main", this::lookup, true)).isEqualTo("tip4");
+    }
+
+    @Test
+    public void shouldAlwaysLookUpAfreshUnlessCachedResultsAreWanted() {
+        RemoteRefCache cache = new RemoteRefCache(Duration.ofHours(1));
+        cache.tip(gitConfig, "refs/heads/main", this::lookup, true);
+
+        assertThat(cache.tip(gitConfig, "refs/heads/main", this::lookup, false)).isEqualTo("tip2");
+        assertThat(cache.tip(gitConfig, "refs/heads/main", this::lookup, true)).isEqualTo("tip2");
+    }
+
+    @Test
+    public void shouldRememberMissingRefs() {
+        RemoteRefCache cache = new RemoteRefCache(Duration.ofHours(1));
+        cache.tip(gitConfig, "refs/heads/main", () -> null, true);
+
+        assertThat(cache.tip(gitConfig, "refs/heads/main", this::lookup, true)).isNull();
+    }
+
+    @Test
+    public void shouldNotRememberFailedLookups() {
+        RemoteRefCache cache = new RemoteRefCache(Duration.ofHours(1));
+
+        assertThatThrownBy(() -> cache.tip(gitConfig, "refs/heads/main", () -> {
+            throw new RuntimeException("unreachable");
+        }, true)).hasMessage("unreachable");
+        assertThat(cache.tip(gitConfig, "refs/heads/main", this::lookup, true)).isEqualTo("tip1");
+    }
+
+    @Test
+    public void shouldExpireLookupsAfterTtl() {
+        RemoteRefCache cache = new RemoteRefCache(Duration.ZERO);
+        cache.tip(gitConfig, "refs/heads/main", this::lookup, true);
+
+        assertThat(cache.tip(gitConfig, "refs/heads/main", this::lookup, true)).isEqualTo("tip2");
+    }
+
+    private String lookup() {
+        return "tip" + lookups.incrementAndGet();
+    }
+}
@@ -0,0 +1,136 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RepositoryFilesTest {
+    private static final String SHA_1 = "24ce45d1a1427b643ae859777417bbc9f0d7cec8";
+    private static final String SHA_2 = "1320a78055558603a2c29d803bbaa50d3542ff50";
+    private static final String SHA_3 = "a63ff2c723c35a15a3ef3eb9f57254b3adbe4d84";
+
+    @TempDir
+    File gitDir;
+
+    @Test
+    public void shouldParseConfigValuesAsGitDoes() {
+        String config = """
+                [core]
+                \tbare = true
+                \tlogallrefupdates
+                ; comment
+                [remote "origin"]
+                \turl = "https://host/x y.git" # trailing comment
+                \tfetch = +refs/heads/*:refs/remotes/origin/*
+                [Remote "Upstream"]
+                \tURL = a\\
+                b\\tc
+                [remote "origin"]
+                \turl = https://host/second.git
+                """;
+
+        assertThat(RepositoryFiles.parseConfig(config))
+                .containsEntry("core.bare", List.of("true"))
+                .containsEntry("core.logallrefupdates", List.of("true"))
+                .containsEntry("remote.origin.url", List.of("https://host/x y.git", "https://host/second.git"))
+                .containsEntry("remote.Upstream.url", List.of("ab\tc"));
+    }
+
+    @Test
+    public void shouldNotInterpretConfigsWithIncludes() {
+        assertThat(RepositoryFiles.parseConfig("[include]\n\tpath = other\n[remote \"origin\"]\n\turl = x\n")).isNull();
+    }
+
+    @Test
+    public void shouldReadConfigValuesMatchingKey() throws IOException {
+        write("config", "[submodule \"Lib\"]\n\turl = ../lib\n\tactive = true\n[submodule \"docs\"]\n\turl = ../docs\n[remote \"origin\"]\n\turl = x\n");
+
+        assertThat(RepositoryFiles.of(gitDir).configValues(Pattern.compile("^submodule\\.(.+)\\.url$")))
+                .isEqualTo(Map.of("Lib", "../lib", "docs", "../docs"));
+    }
+
+    @Test
+    public void shouldReadRemoteUrl() throws IOException {
+        write("config", "[remote \"origin\"]\n\turl = https://host/repo.git\n");
+
+        assertThat(RepositoryFiles.of(gitDir).remoteUrl("origin")).isEqualTo("https://host/repo.git");
+        assertThat(RepositoryFiles.of(gitDir).remoteUrl("other")).isNull();
+    }
+
+    @Test
+    public void shouldReadPackedLooseAndSymbolicRefs() throws IOException {
+        write("packed-refs", "# pack-refs with: peeled fully-peeled sorted\n" +
+                SHA_1 + " refs/remotes/origin/master\n" +
+                SHA_2 + " refs/tags/v1\n^" + SHA_3 + "\n");
+        write("refs/remotes/origin/feature/x", SHA_3 + "\n");
+        write("refs/remotes/origin/HEAD", "ref: refs/remotes/origin/master\n");
+
+        assertThat(RepositoryFiles.of(gitDir).refs())
+                .containsOnlyKeys("refs/remotes/origin/master", "refs/tags/v1", "refs/remotes/origin/feature/x", "refs/remotes/origin/HEAD")
+                .containsEntry("refs/remotes/origin/master", SHA_1)
+                .containsEntry("refs/tags/v1", SHA_2)
+                .containsEntry("refs/remotes/origin/feature/x", SHA_3)
+                .containsEntry("refs/remotes/origin/HEAD", SHA_1);
+    }
+
+    @Test
+    public void shouldRereadRefsOnceTheirFilesChange() throws IOException {
+        write("packed-refs", SHA_1 + " refs/remotes/origin/master\n");
+        Files.createDirectories(gitDir.toPath().resolve("refs/remotes/origin"));
+        age();
+        RepositoryFiles files = RepositoryFiles.of(gitDir);
+        assertThat(files.refs()).containsEntry("refs/remotes/origin/master", SHA_1);
+
+        write("refs/remotes/origin/master", SHA_2 + "\n");
+
+        assertThat(files.refs()).containsEntry("refs/remotes/origin/master", SHA_2);
+    }
+
+    @Test
+    public void shouldNotReadRefsKeptInReftable() throws IOException {
+        write("config", "[core]\n\trepositoryformatversion = 1\n[extensions]\n\trefStorage = reftable\n");
+        write("refs/heads", "this repository uses the reftable format\n");
+        write("reftable/tables.list", "0x000000000001-0x000000000001-00000000.ref\n");
+
+        assertThat(RepositoryFiles.of(gitDir).refs()).isNull();
+    }
+
+    @Test
+    public void shouldNotReadRefsOfOtherRefStorageFormats() throws IOException {
+        write("config", "[extensions]\n\trefStorage = reftable\n");
+        write("packed-refs", SHA_1 + " refs/remotes/origin/master\n");
+
+        assertThat(RepositoryFiles.of(gitDir).refs()).isNull();
+
+        write("config", "[extensions]\n\trefStorage = files\n");
+        assertThat(RepositoryFiles.of(gitDir).refs()).containsEntry("refs/remotes/origin/master", SHA_1);
+    }
+
+    private void write(String name, String content) throws IOException {
+        Path path = gitDir.toPath().resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+    }
+
+    private void age() throws IOException {
+        FileTime old = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+        try (Stream<Path> paths = Files.walk(gitDir.toPath())) {
+            for (Path path : paths.toList()) {
+                Files.setLastModifiedTime(path, old);
+            }
+        }
+    }
+}
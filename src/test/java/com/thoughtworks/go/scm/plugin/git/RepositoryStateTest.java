@@ -0,0 +1,44 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RepositoryStateTest {
+    @TempDir
+    File workingDir;
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @Test
+    public void shouldLookUpSubmoduleUrlsOnceUntilTheirConfigChanges() {
+        RepositoryState state = new RepositoryState(workingDir, () -> Map.of("lib", "../lib" + reads.incrementAndGet()));
+
+        assertThat(state.submoduleUrls()).containsEntry("lib", "../lib1");
+        assertThat(state.submoduleUrls()).containsEntry("lib", "../lib1");
+        state.workingTreeChanged();
+        assertThat(state.submoduleUrls()).containsEntry("lib", "../lib1");
+
+        state.submoduleConfigChanged();
+        assertThat(state.submoduleUrls()).containsEntry("lib", "../lib2");
+        assertThat(reads).hasValue(2);
+    }
+
+    @Test
+    public void shouldLookUpWhetherSubmodulesAreEnabledOnceUntilTheWorkingTreeChanges() throws Exception {
+        RepositoryState state = new RepositoryState(workingDir, Map::of);
+        assertThat(state.isSubmoduleEnabled()).isFalse();
+
+        Files.writeString(new File(workingDir, ".gitmodules").toPath(), "");
+        assertThat(state.isSubmoduleEnabled()).isFalse();
+
+        state.workingTreeChanged();
+        assertThat(state.isSubmoduleEnabled()).isTrue();
+    }
+}
@@ -0,0 +1,78 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RevisionCacheTest {
+    @TempDir
+    File cacheDir;
+
+    @Test
+    public void shouldRoundTripRevisionsKeyedByTipAndNormalizedPaths() {
+        RevisionCache cache = new RevisionCache(cacheDir, 10, 1024 * 1024);
+        cache.put("tip", List.of("b", " a"), revision("sha1"));
+
+        Revision cached = cache.get("tip", List.of("a", "b"));
+
+        assertThat(cached.getRevision()).isEqualTo("sha1");
+        assertThat(cached.getTimestamp()).isEqualTo(Instant.ofEpochSecond(1422184635));
+        assertThat(cached.getComment()).isEqualTo("comment\nwith lines");
+        assertThat(cached.getUser()).isEqualTo("user");
+        assertThat(cached.isMergeCommit()).isTrue();
+        assertThat(cached.getModifiedFiles()).containsExactly(new ModifiedFile("a/file.txt", "added"));
+        assertThat(cache.get("other-tip", List.of("a", "b"))).isNull();
+        assertThat(cache.get("tip", List.of("a"))).isNull();
+    }
+
+    @Test
+    public void shouldKeepFirstParentRevisionsApart() {
+        RevisionCache cache = new RevisionCache(cacheDir, 10, 1024 * 1024);
+        cache.put("tip", List.of("a"), revision("sha1"));
+        cache.put("tip", List.of("a"), true, revision("merge"));
+
+        assertThat(cache.get("tip", List.of("a")).getRevision()).isEqualTo("sha1");
+        assertThat(cache.get("tip", List.of("a"), true).getRevision()).isEqualTo("merge");
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntriesBeyondMaxEntries() {
+        RevisionCache cache = new RevisionCache(cacheDir, 2, 1024 * 1024);
+        cache.put("tip1", List.of("a"), revision("sha1"));
+        cache.put("tip2", List.of("a"), revision("sha2"));
+        cache.get("tip1", List.of("a"));
+        cache.put("tip3", List.of("a"), revision("sha3"));
+
+        assertThat(cache.get("tip1", List.of("a"))).isNotNull();
+        assertThat(cache.get("tip2", List.of("a"))).isNull();
+        assertThat(cache.get("tip3", List.of("a"))).isNotNull();
+    }
+
+    @Test
+    public void shouldEvictEntriesBeyondMaxBytes() {
+        RevisionCache cache = new RevisionCache(cacheDir, 10, 1);
+        cache.put("tip1", List.of("a"), revision("sha1"));
+
+        assertThat(cache.get("tip1", List.of("a"))).isNull();
+        assertThat(cacheDir.list()).isEmpty();
+    }
+
+    @Test
+    public void shouldSurviveReload() {
+        new RevisionCache(cacheDir, 10, 1024 * 1024).put("tip", List.of("a"), revision("sha1"));
+
+        assertThat(new RevisionCache(cacheDir, 10, 1024 * 1024).get("tip", List.of("a")).getRevision()).isEqualTo("sha1");
+    }
+
+    private Revision revision(String sha) {
+        Revision revision = new Revision(sha, Instant.ofEpochSecond(1422184635), "comment\nwith lines", "user", null, null);
+        revision.setMergeCommit(true);
+        revision.createModifiedFile("a/file.txt", "added");
+        return revision;
+    }
+}
@@ -0,0 +1,128 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RevisionStoreTest {
+    private static final String SHA1 = "1".repeat(40);
+    private static final String SHA2 = "2".repeat(40);
+    private static final Map<String, Object> HEADER = Map.of("version", 1);
+
+    @TempDir
+    File storeDir;
+
+    @Test
+    public void shouldStoreRevisionsBySha() {
+        RevisionStore store = store(HEADER);
+        store.put(revision(SHA1));
+        store.put(revision(SHA1));
+
+        Revision stored = store.get(SHA1);
+
+        assertThat(stored.getRevision()).isEqualTo(SHA1);
+        assertThat(stored.getTimestamp()).isEqualTo(Instant.ofEpochSecond(1422184635));
+        assertThat(stored.getComment()).isEqualTo("comment\nwith lines");
+        assertThat(stored.isMergeCommit()).isTrue();
+        assertThat(stored.getModifiedFiles()).containsExactly(new ModifiedFile("a/file.txt", "added"));
+        assertThat(store.get(SHA2)).isNull();
+        assertThat(store.revisions()).containsExactly(SHA1);
+    }
+
+    @Test
+    public void shouldSurviveReopening() {
+        store(HEADER).put(revision(SHA1));
+
+        assertThat(store(HEADER).get(SHA1).getRevision()).isEqualTo(SHA1);
+    }
+
+    @Test
+    public void shouldDropIncompleteRecords() throws Exception {
+        RevisionStore store = store(HEADER);
+        store.put(revision(SHA1));
+        store.put(revision(SHA2));
+        File file = new File(storeDir, "store.revisions");
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+            truncated.setLength(file.length() - 1);
+        }
+
+        RevisionStore reopened = store(HEADER);
+
+        assertThat(reopened.revisions()).containsExactly(SHA1);
+        reopened.put(revision(SHA2));
+        assertThat(store(HEADER).get(SHA2).getRevision()).isEqualTo(SHA2);
+    }
+
+    @Test
+    public void shouldStartAfreshWhenWrittenWithOtherLimits() {
+        store(HEADER).put(revision(SHA1));
+
+        assertThat(store(Map.of("version", 2)).get(SHA1)).isNull();
+    }
+
+    @Test
+    public void shouldCompactToRetainedRevisions() {
+        RevisionStore store = store(HEADER);
+        store.put(revision(SHA1));
+        store.put(revision(SHA2));
+
+        store.compact(Set.of(SHA2));
+
+        assertThat(store.revisions()).containsExactly(SHA2);
+        assertThat(store.get(SHA2).getRevision()).isEqualTo(SHA2);
+        assertThat(store(HEADER).revisions()).containsExactly(SHA2);
+        assertThat(store.isCompactionDue()).isFalse();
+    }
+
+    @Test
+    public void shouldStopGrowingBeyondMaxBytes() {
+        RevisionStore store = new RevisionStore(new File(storeDir, "store.revisions"), 100, HEADER);
+        store.put(revision(SHA1));
+
+        assertThat(store.get(SHA1)).isNull();
+    }
+
+    @Test
+    public void shouldRememberLastCompactionAcrossRestarts() throws Exception {
+        assertThat(store(HEADER).isCompactionDue()).isFalse();
+        File marker = new File(storeDir, "store.revisions.compacted");
+        assertThat(marker).exists();
+
+        marker.setLastModified(Instant.now().minus(Duration.ofDays(2)).toEpochMilli());
+
+        assertThat(store(HEADER).isCompactionDue()).isTrue();
+    }
+
+    @Test
+    public void shouldCompactSoonerOnceFull() {
+        RevisionStore store = new RevisionStore(new File(storeDir, "store.revisions"), 100, HEADER);
+        store.isCompactionDue();
+        new File(storeDir, "store.revisions.compacted").setLastModified(Instant.now().minus(Duration.ofHours(2)).toEpochMilli());
+        assertThat(store.isCompactionDue()).isFalse();
+
+        store.put(revision(SHA1));
+
+        assertThat(store.isCompactionDue()).isTrue();
+        store.compact(Set.of());
+        assertThat(store.isCompactionDue()).isFalse();
+    }
+
+    private RevisionStore store(Map<String, Object> header) {
+        return new RevisionStore(new File(storeDir, "store.revisions"), 1024 * 1024, header);
+    }
+
+    private static Revision revision(String sha) {
+        Revision revision = new Revision(sha, Instant.ofEpochSecond(1422184635), "comment\nwith lines", "user", "user@example.com", List.of(new ModifiedFile("a/file.txt", "added")));
+        revision.setMergeCommit(true);
+        return revision;
+    }
+}
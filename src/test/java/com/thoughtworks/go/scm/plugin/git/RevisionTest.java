@@ -49,4 +49,39 @@ public class RevisionTest {
     public void getEmailId() {
         assertThat(revision.getEmailId()).isEqualTo("email");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldKeepFullShaRevisions() {
+        Revision shaRevision = new Revision("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+
+        assertThat(shaRevision.getRevision()).isEqualTo("24ce45d1a1427b643ae859777417bbc9f0d7cec8");
+    }
+
+    @Test
+    public void shouldShareDirectoriesOfModifiedFilePaths() {
+        PathDictionary dictionary = new PathDictionary();
+        revision.usePathDictionary(dictionary);
+        revision.createModifiedFile("src/main/A.java", ModifiedFile.Action.ADDED);
+        revision.createModifiedFile("src/main/B.java", "deleted");
+        revision.createModifiedFile("README.md", "renamed");
+
+        assertThat(revision.getModifiedFiles()).containsExactly(
+                new ModifiedFile("src/main/A.java", "added"),
+                new ModifiedFile("src/main/B.java", "deleted"),
+                new ModifiedFile("README.md", "unknown"));
+        assertThat(dictionary.directory("src/main/A.java")).isEqualTo("src/main/").isSameAs(dictionary.directory("src/main/B.java"));
+        assertThat(dictionary.directory("README.md")).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepModifiedFilesChangeable() {
+        revision.createModifiedFile("src/A.java", "added");
+        revision.getModifiedFiles().add(new ModifiedFile("src/B.java", "modified"));
+        revision.getModifiedFiles().remove(0);
+        revision.getModifiedFiles().add(0, new ModifiedFile("C.java", "deleted"));
+
+        assertThat(revision.getModifiedFiles()).containsExactly(
+                new ModifiedFile("C.java", "deleted"),
+                new ModifiedFile("src/B.java", "modified"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.thoughtworks.go.scm.plugin.git;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.org.webcompere.systemstubs.SystemStubs.restoreSystemProperties;
+
+public class StagingAreaTest {
+    @TempDir
+    File tempDir;
+
+    private File remote;
+    private GitConfig gitConfig;
+    private StagingArea stagingArea;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        remote = new File(tempDir, "remote");
+        Files.createDirectories(remote.toPath());
+        GitHelper git = new GitHelper(null, remote);
+        git.init();
+        File file = new File(remote, "a.txt");
+        Files.writeString(file.toPath(), "a");
+        git.add(file);
+        git.commit("first");
+
+        gitConfig = new GitConfig(remote.getAbsolutePath(), null, null, new GitHelper(null, remote).getCurrentBranch());
+        gitConfig.setNoCheckout(true);
+        gitConfig.setBare(true);
+        stagingArea = new StagingArea(new File(tempDir, "staging"));
+    }
+
+    @Test
+    public void shouldNotPrewarmUnlessEnabled() {
+        stagingArea.prewarm(gitConfig);
+
+        assertThat(stagingArea.adopt(gitConfig, new File(tempDir, "flyweight"))).isFalse();
+        assertThat(new File(tempDir, "staging")).doesNotExist();
+    }
+
+    @Test
+    public void shouldAdoptPrewarmedCloneOnFirstPoll() throws Exception {
+        restoreSystemProperties(() -> {
+            System.setProperty(StagingArea.PREWARM_TOGGLE, "Y");
+            stagingArea.prewarm(gitConfig);
+
+            File flyweight = new File(tempDir, "flyweight");
+            GitHelper git = new GitHelper(gitConfig, flyweight).withStagingArea(stagingArea);
+
+            assertThat(git.cloneOrFetch()).isTrue();
+            assertThat(new File(tempDir, "staging").list()).isEmpty();
+            assertThat(git.getLatestRevision().getRevision()).isEqualTo(new GitHelper(null, remote).currentRevision());
+            assertThat(stagingArea.adopt(gitConfig, new File(tempDir, "another-flyweight"))).isFalse();
+        });
+    }
+
+    @Test
+    public void shouldParkUnneededFlyweightForNextPollToFetchInto() {
+        File flyweight = new File(tempDir, "flyweight");
+        GitHelper git = new GitHelper(gitConfig, flyweight).withStagingArea(stagingArea);
+        assertThat(git.cloneOrFetch()).isTrue();
+
+        stagingArea.park(gitConfig, flyweight);
+        assertThat(flyweight).doesNotExist();
+
+        assertThat(new GitHelper(gitConfig, flyweight).withStagingArea(stagingArea).cloneOrFetch()).isTrue();
+        assertThat(new File(flyweight, "HEAD")).isFile();
+        assertThat(new File(tempDir, "staging").list()).isEmpty();
+    }
+
+    @Test
+    public void shouldDeleteParkedDirectoriesWhichAreNotRepositories() {
+        File flyweight = new File(tempDir, "flyweight");
+        assertThat(flyweight.mkdirs()).isTrue();
+
+        stagingArea.park(gitConfig, flyweight);
+
+        assertThat(flyweight).doesNotExist();
+        assertThat(stagingArea.adopt(gitConfig, flyweight)).isFalse();
+    }
+
+    @Test
+    public void shouldResumeFailedFirstCloneFromStagingArea() throws Exception {
+        File missingRemote = new File(tempDir, "missing-remote");
+        GitConfig config = new GitConfig(missingRemote.getAbsolutePath(), null, null, gitConfig.getBranch());
+        config.setNoCheckout(true);
+        config.setBare(true);
+        File flyweight = new File(tempDir, "flyweight");
+
+        assertThatThrownBy(() -> new GitHelper(config, flyweight).withStagingArea(stagingArea)
+                .cloneOrFetch(GitHelper.CloneFailureBehavior.REMOVE_IF_CREATED))
+                .isExactlyInstanceOf(RuntimeException.class);
+        assertThat(flyweight).doesNotExist();
+        assertThat(new File(tempDir, "staging").list()).containsExactly(StagingArea.key(config));
+
+        FileUtils.moveDirectory(remote, missingRemote);
+        GitHelper git = new GitHelper(config, flyweight).withStagingArea(stagingArea);
+        assertThat(git.cloneOrFetch(GitHelper.CloneFailureBehavior.REMOVE_IF_CREATED)).isTrue();
+        assertThat(git.getLatestRevision().getRevision()).isEqualTo(new GitHelper(null, missingRemote).currentRevision());
+        assertThat(new File(tempDir, "staging").list()).isEmpty();
+    }
+
+    @Test
+    public void shouldCollectStagedClonesOlderThanMaxAge() throws Exception {
+        File flyweight = new File(tempDir, "flyweight");
+        assertThat(new GitHelper(gitConfig, flyweight).withStagingArea(stagingArea).cloneOrFetch()).isTrue();
+        stagingArea.park(gitConfig, flyweight);
+        File staged = new File(tempDir, "staging/" + StagingArea.key(gitConfig));
+
+        stagingArea.collectGarbage();
+        assertThat(staged).isDirectory();
+
+        assertThat(staged.setLastModified(System.currentTimeMillis() - Duration.ofHours(2).toMillis())).isTrue();
+        restoreSystemProperties(() -> {
+            System.setProperty(StagingArea.MAX_AGE, "1");
+            stagingArea.collectGarbage();
+        });
+        assertThat(staged).doesNotExist();
+    }
+}
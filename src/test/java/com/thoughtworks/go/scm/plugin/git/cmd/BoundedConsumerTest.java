@@ -0,0 +1,35 @@
+package com.thoughtworks.go.scm.plugin.git.cmd;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedConsumerTest {
+    @Test
+    public void shouldKeepAllLinesWithinBounds() {
+        BoundedConsumer consumer = new BoundedConsumer(2, 3, 100);
+        IntStream.rangeClosed(1, 5).forEach(i -> consumer.consumeLine("line " + i));
+
+        assertThat(consumer.asList()).containsExactly("line 1", "line 2", "line 3", "line 4", "line 5");
+        assertThat(consumer.omittedLines()).isZero();
+    }
+
+    @Test
+    public void shouldKeepHeadAndTailAndReportOmittedLinesInBetween() {
+        BoundedConsumer consumer = new BoundedConsumer(2, 3, 100);
+        IntStream.rangeClosed(1, 10).forEach(i -> consumer.consumeLine("line " + i));
+
+        assertThat(consumer.asList()).containsExactly("line 1", "line 2", "[... 5 lines omitted ...]", "line 8", "line 9", "line 10");
+        assertThat(consumer.omittedLines()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldCutLongLines() {
+        BoundedConsumer consumer = new BoundedConsumer(1, 1, 5);
+        consumer.consumeLine("0123456789");
+
+        assertThat(consumer.asList()).containsExactly("01234... [5 characters omitted]");
+    }
+}
@@ -0,0 +1,46 @@
+package com.thoughtworks.go.scm.plugin.git.cmd;
+
+import org.apache.commons.exec.CommandLine;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.org.webcompere.systemstubs.SystemStubs.restoreSystemProperties;
+
+class CommandTimeoutsTest {
+    @Test
+    public void shouldFindSubcommandAfterGlobalOptions() {
+        assertThat(CommandTimeouts.subcommand(Console.createCommand("-c", "core.quotePath=false", "log", "-1"))).isEqualTo("log");
+        assertThat(CommandTimeouts.subcommand(Console.createCommand("--no-pager", "-C", "dir", "fetch", "origin"))).isEqualTo("fetch");
+        assertThat(CommandTimeouts.subcommand(Console.createCommand("--version"))).isEqualTo("default");
+        assertThat(CommandTimeouts.subcommand(CommandLine.parse("sh -c true"))).isEqualTo("default");
+    }
+
+    @Test
+    public void shouldGiveNetworkOperationsLongerBudgetsThanLocalLookups() {
+        assertThat(CommandTimeouts.forCommand(Console.createCommand("fetch", "origin"))).isEqualTo(Duration.ofHours(1));
+        assertThat(CommandTimeouts.forCommand(Console.createCommand("config", "remote.origin.url"))).isEqualTo(Duration.ofMinutes(1));
+        assertThat(CommandTimeouts.forCommand(Console.createCommand("ls-files"))).isEqualTo(Duration.ofSeconds(CommandTimeouts.DEFAULT_SECONDS));
+    }
+
+    @Test
+    public void shouldAllowBudgetsToBeOverriddenOrDisabled() throws Exception {
+        restoreSystemProperties(() -> {
+            System.setProperty(CommandTimeouts.PREFIX + "fetch", "5");
+            System.setProperty(CommandTimeouts.PREFIX + "clone", "0");
+            System.setProperty(CommandTimeouts.DEFAULT, "7");
+
+            assertThat(CommandTimeouts.forCommand(Console.createCommand("fetch", "origin"))).isEqualTo(Duration.ofSeconds(5));
+            assertThat(CommandTimeouts.forCommand(Console.createCommand("clone", "url"))).isNull();
+            assertThat(CommandTimeouts.forCommand(Console.createCommand("ls-files"))).isEqualTo(Duration.ofSeconds(7));
+        });
+    }
+
+    @Test
+    public void shouldDescribePhase() {
+        assertThat(CommandTimeouts.phase(Console.createCommand("submodule", "update", "--init"))).isEqualTo("git submodule update");
+        assertThat(CommandTimeouts.phase(Console.createCommand("-c", "a=b", "fetch", "origin"))).isEqualTo("git fetch");
+        assertThat(CommandTimeouts.phase(CommandLine.parse("sh -c true"))).isEqualTo("sh");
+    }
+}
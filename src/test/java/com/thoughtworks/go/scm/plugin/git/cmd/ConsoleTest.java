@@ -6,9 +6,12 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.org.webcompere.systemstubs.SystemStubs.restoreSystemProperties;
 
 class ConsoleTest {
 
@@ -49,4 +52,19 @@ class ConsoleTest {
                 .hasMessageNotContainingAny(secrets.toArray(String[]::new))
                 .hasCauseExactlyInstanceOf(IOException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldKillCommandsThatExceedTheirTimeBudget() throws Exception {
+        restoreSystemProperties(() -> {
+            System.setProperty(CommandTimeouts.DEFAULT, "1");
+            CommandLine command = new CommandLine("sh").addArguments(new String[]{"-c", "sleep 30 & sleep 30"}, false);
+            long start = System.nanoTime();
+
+            assertThatThrownBy(() -> Console.runOrBomb(command, tempDir, null, null, List.of()))
+                    .isExactlyInstanceOf(RuntimeException.class)
+                    .hasMessageContaining("sh timed out after 1 seconds")
+                    .hasNoCause();
+            assertThat(System.nanoTime() - start).isLessThan(Duration.ofSeconds(15).toNanos());
+        });
+    }
+}
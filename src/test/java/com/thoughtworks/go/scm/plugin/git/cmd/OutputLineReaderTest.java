@@ -0,0 +1,86 @@
+package com.thoughtworks.go.scm.plugin.git.cmd;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputLineReaderTest {
+    @Test
+    public void shouldSplitLinesOnAnyLineEnding() throws IOException {
+        assertThat(lines("a\r\nb\rc\n\nd")).containsExactly("a", "b", "c", "", "d");
+    }
+
+    @Test
+    public void shouldNotEmitTrailingEmptyLine() throws IOException {
+        assertThat(lines("a\nb\n")).containsExactly("a", "b");
+        assertThat(lines("")).isEmpty();
+    }
+
+    @Test
+    public void shouldDecodeMultiByteCharactersSplitAcrossReads() throws IOException {
+        byte[] bytes = "héllo wörld\n€\n".getBytes(StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+        OutputLineReader.readLines(new OneByteAtATimeInputStream(bytes), lines::add);
+
+        assertThat(lines).containsExactly("héllo wörld", "€");
+    }
+
+    @Test
+    public void shouldHandleLinesLongerThanTheReadBuffer() throws IOException {
+        String longLine = "x".repeat(20_000);
+
+        assertThat(lines(longLine + "\nshort")).containsExactly(longLine, "short");
+    }
+
+    @Test
+    public void shouldCutLinesLongerThanTheLimitAndCountWhatWasCut() throws IOException {
+        List<String> lines = new ArrayList<>();
+        OutputLineReader.readLines(new ByteArrayInputStream(("x".repeat(20_000) + "\nshort\n").getBytes(StandardCharsets.UTF_8)), lines::add, 10);
+
+        assertThat(lines).containsExactly("xxxxxxxxxx... [19990 bytes omitted]", "short");
+    }
+
+    @Test
+    public void shouldNotCutMultiByteCharactersInTwo() throws IOException {
+        List<String> lines = new ArrayList<>();
+        OutputLineReader.readLines(new OneByteAtATimeInputStream("abcd€€".getBytes(StandardCharsets.UTF_8)), lines::add, 6);
+
+        assertThat(lines).containsExactly("abcd... [6 bytes omitted]");
+    }
+
+    private List<String> lines(String output) throws IOException {
+        List<String> lines = new ArrayList<>();
+        OutputLineReader.readLines(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), lines::add);
+        return lines;
+    }
+
+    private static class OneByteAtATimeInputStream extends InputStream {
+        private final byte[] bytes;
+        private int position;
+
+        OneByteAtATimeInputStream(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= bytes.length) {
+                return -1;
+            }
+            b[off] = bytes[position++];
+            return 1;
+        }
+    }
+}
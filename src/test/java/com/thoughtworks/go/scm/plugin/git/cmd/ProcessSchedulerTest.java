@@ -0,0 +1,99 @@
+package com.thoughtworks.go.scm.plugin.git.cmd;
+
+import com.thoughtworks.go.scm.plugin.git.cmd.ProcessScheduler.Priority;
+import com.thoughtworks.go.scm.plugin.git.cmd.ProcessScheduler.Slot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProcessSchedulerTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<String> admitted = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldQueueProcessesBeyondTheCap() throws Exception {
+        ProcessScheduler scheduler = new ProcessScheduler(1, 1);
+        Slot slot = scheduler.acquire(null, Priority.NORMAL);
+
+        Future<?> waiting = admitAndRelease(scheduler, null, Priority.NORMAL, "second");
+        awaitWaiting(scheduler, 1);
+        assertThat(admitted).isEmpty();
+
+        slot.close();
+        waiting.get(5, TimeUnit.SECONDS);
+        assertThat(admitted).containsExactly("second");
+        assertThat(scheduler.queueTimes().get(Priority.NORMAL).started()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldAdmitByPriorityThenInArrivalOrder() throws Exception {
+        ProcessScheduler scheduler = new ProcessScheduler(1, 1);
+        Slot slot = scheduler.acquire(null, Priority.NORMAL);
+
+        Future<?> maintenance = admitAndRelease(scheduler, null, Priority.MAINTENANCE, "gc");
+        awaitWaiting(scheduler, 1);
+        Future<?> firstPoll = admitAndRelease(scheduler, null, Priority.NORMAL, "first poll");
+        awaitWaiting(scheduler, 2);
+        Future<?> secondPoll = admitAndRelease(scheduler, null, Priority.NORMAL, "second poll");
+        awaitWaiting(scheduler, 3);
+        Future<?> check = admitAndRelease(scheduler, null, Priority.INTERACTIVE, "connection check");
+        awaitWaiting(scheduler, 4);
+
+        slot.close();
+        for (Future<?> future : List.of(maintenance, firstPoll, secondPoll, check)) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(admitted).containsExactly("connection check", "first poll", "second poll", "gc");
+    }
+
+    @Test
+    public void shouldLimitProcessesPerHostWithoutHoldingUpOtherHosts() throws Exception {
+        ProcessScheduler scheduler = new ProcessScheduler(3, 1);
+        Slot slot = scheduler.acquire("github.com", Priority.NORMAL);
+
+        Future<?> sameHost = admitAndRelease(scheduler, "github.com", Priority.NORMAL, "github.com");
+        awaitWaiting(scheduler, 1);
+        admitAndRelease(scheduler, "gitlab.com", Priority.NORMAL, "gitlab.com").get(5, TimeUnit.SECONDS);
+        admitAndRelease(scheduler, null, Priority.NORMAL, "local").get(5, TimeUnit.SECONDS);
+        assertThat(admitted).containsExactly("gitlab.com", "local");
+
+        slot.close();
+        sameHost.get(5, TimeUnit.SECONDS);
+        assertThat(admitted).containsExactly("gitlab.com", "local", "github.com");
+    }
+
+    @Test
+    public void shouldAdmitThreadWhichAlreadyHoldsASlot() {
+        ProcessScheduler scheduler = new ProcessScheduler(1, 1);
+
+        try (Slot outer = scheduler.acquire(null, Priority.NORMAL); Slot inner = scheduler.acquire(null, Priority.NORMAL)) {
+            assertThat(scheduler.waiting()).isZero();
+        }
+        scheduler.acquire(null, Priority.NORMAL).close();
+    }
+
+    private Future<?> admitAndRelease(ProcessScheduler scheduler, String host, Priority priority, String name) {
+        return executor.submit(() -> {
+            try (Slot ignored = scheduler.acquire(host, priority)) {
+                admitted.add(name);
+            }
+        });
+    }
+
+    private static void awaitWaiting(ProcessScheduler scheduler, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.waiting() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(scheduler.waiting()).isEqualTo(count);
+    }
+}
@@ -51,8 +51,8 @@ public class CheckoutRequestHandlerTest {
 
             checkoutRequestHandler.handle(pluginApiRequestMock);
 
-            verify(gitHelperMock).cloneOrFetch();
-            verify(gitHelperMock).resetHard(revision);
+            verify(gitHelperMock).cloneOrFetchToRevision(revision);
+            verify(gitHelperMock, never()).cloneOrFetch();
 
             Map<String, Object> responseMap = responseArgumentCaptor.getValue();
             ArrayList<String> messages = (ArrayList<String>) responseMap.get("messages");
@@ -72,7 +72,7 @@ public class CheckoutRequestHandlerTest {
             ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
             Exception cause = new IllegalArgumentException("git@github.com:lifealike/gocd-config.git: UnknownHostKey: github.com. RSA key fingerprint is 16:27:ac:a5:76:28:2d:36:63:1b:56:4d:eb:df:a6:48");
             RuntimeException runtimeException = new RuntimeException("clone failed", cause);
-            doThrow(runtimeException).when(gitHelperMock).cloneOrFetch();
+            doThrow(runtimeException).when(gitHelperMock).cloneOrFetchToRevision(revision);
             when(JsonUtils.renderErrorApiResponse(eq(pluginApiRequestMock), errorCaptor.capture(), any())).thenReturn(mock(GoPluginApiResponse.class));
 
             checkoutRequestHandler.handle(pluginApiRequestMock);
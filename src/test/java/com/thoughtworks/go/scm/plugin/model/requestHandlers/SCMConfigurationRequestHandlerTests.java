@@ -88,4 +88,50 @@ public class SCMConfigurationRequestHandlerTests {
         assertThat(urlField).containsEntry("secure", false);
         assertThat(urlField).containsEntry("display-order", "5");
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void responseShouldContainFirstParentField() throws IOException {
+        GoPluginApiResponse apiResponse = requestHandler.handle(apiRequest);
+
+        Map<String, Object> response = JsonHelper.getResponse(apiResponse);
+        Map<String, Object> urlField = (Map<String, Object>) response.get("first_parent");
+
+        assertThat(urlField).containsEntry("display-name", "First Parent History");
+        assertThat(urlField).containsEntry("default-value", "false");
+        assertThat(urlField).containsEntry("part-of-identity", false);
+        assertThat(urlField).containsEntry("required", false);
+        assertThat(urlField).containsEntry("secure", false);
+        assertThat(urlField).containsEntry("display-order", "6");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void responseShouldContainBranchPatternField() throws IOException {
+        GoPluginApiResponse apiResponse = requestHandler.handle(apiRequest);
+
+        Map<String, Object> response = JsonHelper.getResponse(apiResponse);
+        Map<String, Object> urlField = (Map<String, Object>) response.get("branch_pattern");
+
+        assertThat(urlField).containsEntry("display-name", "Branch Pattern");
+        assertThat(urlField).containsEntry("part-of-identity", true);
+        assertThat(urlField).containsEntry("required", false);
+        assertThat(urlField).containsEntry("secure", false);
+        assertThat(urlField).containsEntry("display-order", "7");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void responseShouldContainTagPatternField() throws IOException {
+        GoPluginApiResponse apiResponse = requestHandler.handle(apiRequest);
+
+        Map<String, Object> response = JsonHelper.getResponse(apiResponse);
+        Map<String, Object> urlField = (Map<String, Object>) response.get("tag_pattern");
+
+        assertThat(urlField).containsEntry("display-name", "Tag Pattern");
+        assertThat(urlField).containsEntry("part-of-identity", true);
+        assertThat(urlField).containsEntry("required", false);
+        assertThat(urlField).containsEntry("secure", false);
+        assertThat(urlField).containsEntry("display-order", "8");
+    }
 }
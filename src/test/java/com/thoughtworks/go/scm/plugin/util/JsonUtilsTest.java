@@ -112,6 +112,43 @@ public class JsonUtilsTest {
         assertThat(config.isShallowClone()).isTrue();
     }
 
+    @Test
+    public void shouldReturnServerSideGitConfigWithFirstParent() throws IOException {
+        final Map<String, Object> configurationMap = Map.of(
+                "url", new ConfigurationItem("http://localhost.com"),
+                "first_parent", new ConfigurationItem("true")
+        );
+
+        GitConfig config = JsonUtils.toServerSideGitConfig(mockApiRequestFor(configurationMap));
+
+        assertThat(config.isFirstParent()).isTrue();
+        assertThat(JsonUtils.toServerSideGitConfig(mockApiRequestFor(Map.of("url", new ConfigurationItem("http://localhost.com")))).isFirstParent()).isFalse();
+    }
+
+    @Test
+    public void shouldReturnGitConfigWithBranchPattern() throws IOException {
+        GitConfig config = JsonUtils.toServerSideGitConfig(mockApiRequestFor(Map.of(
+                "url", new ConfigurationItem("http://localhost.com"),
+                "branch_pattern", new ConfigurationItem(" release/* ")
+        )));
+
+        assertThat(config.getBranchPattern()).isEqualTo("release/*");
+        assertThat(config.isBranchPattern()).isTrue();
+        assertThat(JsonUtils.toServerSideGitConfig(mockApiRequestFor(Map.of("url", new ConfigurationItem("http://localhost.com")))).isBranchPattern()).isFalse();
+    }
+
+    @Test
+    public void shouldReturnGitConfigWithTagPattern() throws IOException {
+        GitConfig config = JsonUtils.toServerSideGitConfig(mockApiRequestFor(Map.of(
+                "url", new ConfigurationItem("http://localhost.com"),
+                "tag_pattern", new ConfigurationItem("v*")
+        )));
+
+        assertThat(config.getTagPattern()).isEqualTo("v*");
+        assertThat(config.isTagPattern()).isTrue();
+        assertThat(JsonUtils.toServerSideGitConfig(mockApiRequestFor(Map.of("url", new ConfigurationItem("http://localhost.com")))).isTagPattern()).isFalse();
+    }
+
     private GoPluginApiRequest mockApiRequestFor(Map<String, Object> configurationMap) throws IOException {
         GoPluginApiRequest apiRequest = mock(GoPluginApiRequest.class);
         Map<String, Object> scmConfiguration = new HashMap<>();
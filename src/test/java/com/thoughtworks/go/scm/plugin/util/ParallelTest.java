@@ -0,0 +1,112 @@
+package com.thoughtworks.go.scm.plugin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelTest {
+    @Test
+    public void shouldRunEveryItemWithinTheParallelismCap() {
+        List<Integer> items = IntStream.range(0, 50).boxed().toList();
+        AtomicIntegerArray results = new AtomicIntegerArray(items.size());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        Parallel.forEach(UUID.randomUUID().toString(), 3, items, item -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep();
+            results.set(item, item * 2);
+            running.decrementAndGet();
+        });
+
+        assertThat(maxRunning.get()).isBetween(1, 3);
+        IntStream.range(0, items.size()).forEach(i -> assertThat(results.get(i)).isEqualTo(i * 2));
+    }
+
+    @Test
+    public void shouldFollowChangesToTheParallelismOfAKey() {
+        String key = UUID.randomUUID().toString();
+        List<Integer> items = IntStream.range(0, 20).boxed().toList();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Parallel.forEach(key, 2, items, item -> sleep());
+
+        Parallel.forEach(key, 4, items, item -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep();
+            running.decrementAndGet();
+        });
+
+        assertThat(maxRunning.get()).isBetween(3, 4);
+    }
+
+    @Test
+    public void shouldKeepConcurrentCallersWithDifferentParallelismWithinOneCap() throws InterruptedException {
+        String key = UUID.randomUUID().toString();
+        List<Integer> items = IntStream.range(0, 40).boxed().toList();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Consumer<Integer> task = item -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep();
+            running.decrementAndGet();
+        };
+        Thread wider = new Thread(() -> Parallel.forEach(key, 4, items, task));
+        wider.start();
+
+        Parallel.forEach(key, 2, items, task);
+        wider.join();
+
+        assertThat(maxRunning.get()).isBetween(1, 4);
+    }
+
+    @Test
+    public void shouldForgetKeysNoLongerInUse() {
+        String key = UUID.randomUUID().toString();
+
+        Parallel.forEach(key, 3, List.of(1, 2, 3), item -> assertThat(Parallel.hasPermits(key)).isTrue());
+
+        assertThat(Parallel.hasPermits(key)).isFalse();
+    }
+
+    @Test
+    public void shouldCompleteNestedTasksWhenThePoolIsBusy() {
+        List<Integer> items = IntStream.range(0, 64).boxed().toList();
+        AtomicInteger completed = new AtomicInteger();
+
+        Parallel.forEach(UUID.randomUUID().toString(), items.size(), items, outer ->
+                Parallel.forEach(UUID.randomUUID().toString(), 4, List.of(1, 2, 3, 4), inner -> {
+                    sleep();
+                    completed.incrementAndGet();
+                }));
+
+        assertThat(completed.get()).isEqualTo(items.size() * 4);
+    }
+
+    @Test
+    public void shouldRethrowFirstFailure() {
+        assertThatThrownBy(() -> Parallel.forEach(UUID.randomUUID().toString(), 4, List.of(1, 2, 3), item -> {
+            if (item == 2) {
+                throw new IllegalStateException("failed on 2");
+            }
+        }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("failed on 2");
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
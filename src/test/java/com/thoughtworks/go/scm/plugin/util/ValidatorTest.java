@@ -1,8 +1,11 @@
 package com.thoughtworks.go.scm.plugin.util;
 
+import com.thoughtworks.go.scm.plugin.git.GitConfig;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.thoughtworks.go.scm.plugin.util.Validator.isValidURL;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -64,4 +67,20 @@ public class ValidatorTest {
                 "rsync://host.xz/path/to/repo.git/"
         ).forEach(url ->  assertThat(url).matches(u -> !isValidURL(u), "is not valid URL"));
     }
+
+    @Test
+    public void shouldNotAllowTagPatternCombinedWithBranchPattern() {
+        GitConfig gitConfig = new GitConfig("https://github.com/user/project.git");
+        gitConfig.setTagPattern("v*");
+        Map<String, Object> fieldMap = new HashMap<>();
+
+        Validator.validateRefPatterns(gitConfig, fieldMap);
+        assertThat(fieldMap).isEmpty();
+
+        gitConfig.setBranchPattern("release/*");
+        Validator.validateRefPatterns(gitConfig, fieldMap);
+        assertThat(fieldMap)
+                .containsEntry("key", "tag_pattern")
+                .containsEntry("message", "Tag Pattern cannot be combined with Branch Pattern");
+    }
 }